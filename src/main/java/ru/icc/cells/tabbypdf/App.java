@@ -11,9 +11,14 @@ import ru.icc.cells.tabbypdf.entities.TableBox;
 import ru.icc.cells.tabbypdf.entities.TextBlock;
 import ru.icc.cells.tabbypdf.entities.table.Table;
 import ru.icc.cells.tabbypdf.exceptions.EmptyArgumentException;
+import ru.icc.cells.tabbypdf.extraction.ExtractionLayer;
+import ru.icc.cells.tabbypdf.extraction.PdfArchive;
 import ru.icc.cells.tabbypdf.extraction.PdfDataExtractor;
+import ru.icc.cells.tabbypdf.extraction.PdfDataExtractorConfiguration;
 import ru.icc.cells.tabbypdf.recognition.SimpleTableRecognizer;
 import ru.icc.cells.tabbypdf.recognition.TableOptimizer;
+import ru.icc.cells.tabbypdf.utils.processing.HeaderFooterRemover;
+import ru.icc.cells.tabbypdf.utils.processing.HeuristicStatistics;
 import ru.icc.cells.tabbypdf.utils.processing.TextChunkProcessor;
 import ru.icc.cells.tabbypdf.utils.processing.TextChunkProcessorConfiguration;
 import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
@@ -36,8 +41,14 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import java.util.NoSuchElementException;
@@ -46,10 +57,28 @@ import java.util.NoSuchElementException;
  * @author aaltaev
  */
 public class App {
-    @Option(name = "-f", usage = "Folder name")
+    /**
+     * Memory for a compressed archive entry, the rest of the entry is kept in scratch files
+     */
+    private static final long ARCHIVE_ENTRY_MEMORY_BYTES = 64L * 1024 * 1024;
+
+    @Option(name = "-f", usage = "Folder name or ZIP/TAR archive of documents")
     private String inputFolder;
     @Option(name = "-xml", usage = "Resulting xmlFile file")
     private String xmlFolder;
+    @Option(name = "-threads", usage = "Number of threads extracting pages of a document")
+    private int    threads = 1;
+    @Option(name = "-removeHeaders", usage = "Remove running headers and footers learned on the first pages")
+    private boolean removeHeaders;
+    @Option(name = "-stdin", usage = "Read one document from the standard input, write results to the standard output")
+    private boolean stdin;
+    @Option(name = "-heuristicStatistics", usage = "Order heuristics adaptively, write their statistics to the file")
+    private String  heuristicStatisticsFile;
+    @Option(name = "-heuristicOrder", usage = "Test heuristics in the order of their statistics written before")
+    private String  heuristicOrderFile;
+
+    /* configuration shared by all pages, so that its heuristics are compiled once */
+    private final TextChunkProcessorConfiguration configuration = getRecognizingConfiguration();
 
     public static void main(String[] args) {
         new App().run(args);
@@ -60,10 +89,21 @@ public class App {
 
         try {
             parser.parseArgument(args);
-            checkArgThrowIfEmpty(inputFolder);
-            checkArgThrowIfEmpty(xmlFolder);
+            if (checkArgIsNotEmpty(heuristicOrderFile)) {
+                configuration.setHeuristicOrder(HeuristicStatistics.parse(read(heuristicOrderFile)));
+            }
+            configuration.setAdaptiveHeuristicOrder(checkArgIsNotEmpty(heuristicStatisticsFile));
+            if (stdin) {
+                extractStandardInput();
+            } else {
+                checkArgThrowIfEmpty(inputFolder);
+                checkArgThrowIfEmpty(xmlFolder);
 
-            extractAndWrite();
+                extractAndWrite();
+            }
+            if (checkArgIsNotEmpty(heuristicStatisticsFile)) {
+                write(heuristicStatisticsFile, configuration.getHeuristicPipeline().exportStatistics());
+            }
 
         } catch (CmdLineException | EmptyArgumentException e) {
             parser.printUsage(System.err);
@@ -71,6 +111,22 @@ public class App {
 
     }
 
+    private static String read(String fileName) {
+        try {
+            return new String(Files.readAllBytes(Paths.get(fileName)), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void write(String fileName, String text) {
+        try {
+            Files.write(Paths.get(fileName), text.getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void checkArgsThrowIfAllEmpty(String... args) {
         if (!Stream.of(args).anyMatch(this::checkArgIsNotEmpty)) {
             throw new EmptyArgumentException("At least one of these options must be specified: -xml, -excel, -html.");
@@ -87,34 +143,88 @@ public class App {
     }
 
     public void extractAndWrite() {
-
-        File folder = new File(inputFolder);
-        for (File file : folder.listFiles(File::isFile)) {
-            if (file.getName().lastIndexOf(".pdf") == file.getName().length() - 4) {
-                List<Page> pages = new PdfDataExtractor.Factory().getPdfBoxTextExtractor(file).getPageContent();
-                try {
-                    for (int pageNumber = 0; pageNumber < pages.size(); pageNumber++) {
-                        Page page = pages.get(pageNumber);
-                        TextChunkProcessorConfiguration configuration = getRecognizingConfiguration();
-                        List<TextBlock> textBlocks = new TextChunkProcessor(page, configuration).process();
-
-                        // write data to xml
-                        String fileName = file.getName();
-                        TableTextBlockToXmlWriter writer = new TableTextBlockToXmlWriter(fileName);
-                        try {
-                            FileWriter fileWriter = new FileWriter(
-                                    xmlFolder + fileName.substring(0, fileName.lastIndexOf('.')) + "-blk-output.xml");
-                            fileWriter.write(writer.write(textBlocks));
-                            fileWriter.close();
-                        } catch (IOException e) {
-                            throw new RuntimeException(e);
-                        }
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads - 1) : null;
+        // blocks are built from words only, documents of a batch often embed the same fonts
+        PdfDataExtractorConfiguration extractorConfiguration = new PdfDataExtractorConfiguration()
+            .setLayers(ExtractionLayer.WORDS)
+            .setUseSharedFontCache(true);
+        PdfDataExtractor.Factory factory = new PdfDataExtractor.Factory(extractorConfiguration);
+        try {
+            File folder = new File(inputFolder);
+            File[] files = folder.isFile() ? new File[] {folder} : folder.listFiles(File::isFile);
+            for (File file : files) {
+                if (file.getName().lastIndexOf(".pdf") == file.getName().length() - 4) {
+                    extractAndWrite(file.getName(), factory.getPdfBoxTextExtractor(file), executor);
+                } else if (PdfArchive.isArchive(file)) {
+                    // documents are read from the archive without unpacking it
+                    try (PdfArchive archive = PdfArchive.open(file, ARCHIVE_ENTRY_MEMORY_BYTES)) {
+                        archive.forEachDocument((name, document) -> extractAndWrite(
+                            name.substring(name.lastIndexOf('/') + 1), factory.getPdfBoxTextExtractor(document),
+                            executor
+                        ));
                     }
-                } catch (NoSuchElementException e) {
                 }
             }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
         }
+    }
+
+    private void extractAndWrite(String fileName, PdfDataExtractor extractor, ExecutorService executor) {
+        if (executor == null) {
+            try (PdfDataExtractor.PageIterator pages = extractor.getPageIterator()) {
+                writePages(fileName, pages);
+            }
+        } else {
+            writePages(fileName, extractor.getPageContent(executor, threads).iterator());
+        }
+    }
+
+    public void extractStandardInput() {
+        // blocks are built from words only
+        PdfDataExtractorConfiguration extractorConfiguration = new PdfDataExtractorConfiguration()
+            .setLayers(ExtractionLayer.WORDS);
+        // pages of linearized documents are written as soon as they have been read
+        PdfDataExtractor extractor = new PdfDataExtractor.Factory(extractorConfiguration)
+            .getProgressiveTextExtractor(System.in);
+        if (threads > 1) {
+            writePages("stdin.pdf", extractor.getPageContent(threads).iterator());
+        } else {
+            try (PdfDataExtractor.PageIterator pages = extractor.getPageIterator()) {
+                writePages("stdin.pdf", pages);
+            }
+        }
+        System.out.flush();
+    }
 
+    private void writePages(String fileName, Iterator<Page> pages) {
+        if (removeHeaders) {
+            pages = new HeaderFooterRemover().process(pages);
+        }
+        try {
+            while (pages.hasNext()) {
+                Page page = pages.next();
+                List<TextBlock> textBlocks = new TextChunkProcessor(page, configuration).process();
+
+                // write data to xml
+                TableTextBlockToXmlWriter writer = new TableTextBlockToXmlWriter(fileName);
+                if (stdin) {
+                    System.out.println(writer.write(textBlocks));
+                    continue;
+                }
+                try {
+                    FileWriter fileWriter = new FileWriter(
+                            xmlFolder + fileName.substring(0, fileName.lastIndexOf('.')) + "-blk-output.xml");
+                    fileWriter.write(writer.write(textBlocks));
+                    fileWriter.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        } catch (NoSuchElementException e) {
+        }
     }
 
     public static TextChunkProcessorConfiguration getDetectionConfiguration() {
@@ -9,9 +9,14 @@ import lombok.NoArgsConstructor;
  * @author aaltaev
  */
 @Getter
-@EqualsAndHashCode
+@EqualsAndHashCode(exclude = {"id", "familyId", "registry"})
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public class FontCharacteristics {
+    /**
+     * Id of font characteristics, which are not interned by a {@link FontCharacteristicsRegistry}
+     */
+    public final static int UNREGISTERED = -1;
+
     private final static int ALL_CAP      = 0b000000001;
     private final static int FIXED_PITCH  = 0b000000010;
     private final static int FORCE_BOLD   = 0b000000100;
@@ -28,6 +33,10 @@ public class FontCharacteristics {
     private double  size;
     private double  spaceWidth;
 
+    private int                         id       = UNREGISTERED;
+    private int                         familyId = UNREGISTERED;
+    private FontCharacteristicsRegistry registry;
+
     public boolean isAllCap() {
         return (flags & ALL_CAP) == ALL_CAP;
     }
@@ -64,6 +73,70 @@ public class FontCharacteristics {
         return (flags & SYMBOLIC) == SYMBOLIC;
     }
 
+    /**
+     * Checks whether both characteristics describe the same font. Characteristics interned by the same registry
+     * are compared by their ids.
+     */
+    public boolean isSameFont(FontCharacteristics other) {
+        if (other == null) {
+            return false;
+        }
+        if (registry != null && registry == other.registry) {
+            return id == other.id;
+        }
+        return equals(other);
+    }
+
+    /**
+     * Checks whether both characteristics have the same non-null font family. Characteristics interned by the same
+     * registry are compared by their family ids.
+     */
+    public boolean isSameFamily(FontCharacteristics other) {
+        if (other == null) {
+            return false;
+        }
+        if (registry != null && registry == other.registry) {
+            return familyId != UNREGISTERED && familyId == other.familyId;
+        }
+        return fontFamily != null && fontFamily.equals(other.fontFamily);
+    }
+
+    FontCharacteristics register(FontCharacteristicsRegistry registry, int id, int familyId) {
+        FontCharacteristics registered = copy();
+        registered.registry = registry;
+        registered.id = id;
+        registered.familyId = familyId;
+        return registered;
+    }
+
+    /**
+     * @return unregistered copy of the characteristics with the given size and space width
+     */
+    public FontCharacteristics withSize(double size, double spaceWidth) {
+        FontCharacteristics copy = copy();
+        copy.size = size;
+        copy.spaceWidth = spaceWidth;
+        return copy;
+    }
+
+    /**
+     * @return unregistered copy of the characteristics with the font name without the tag of an embedded subset, i.e.
+     * six uppercase letters followed by a plus sign, or the characteristics themselves if the name has no tag
+     */
+    public FontCharacteristics withoutSubsetTag() {
+        if (fontName == null || fontName.length() < 7 || fontName.charAt(6) != '+') {
+            return this;
+        }
+        for (int i = 0; i < 6; i++) {
+            if (fontName.charAt(i) < 'A' || fontName.charAt(i) > 'Z') {
+                return this;
+            }
+        }
+        FontCharacteristics copy = copy();
+        copy.fontName = fontName.substring(7);
+        return copy;
+    }
+
     public static Builder newBuilder() {
         return new FontCharacteristics().new Builder();
     }
@@ -0,0 +1,78 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Interns font characteristics, so every distinct combination of font, size and flags is kept once and gets a
+ * compact int id. Ids are only comparable between characteristics of the same registry.
+ * <p>
+ * Registries are thread safe. A registry is usually created for every document, but {@link #shared()} may be used
+ * to intern fonts of all processed documents.
+ * <p>
+ * Interned characteristics are never evicted, as their ids are held by the chunks of processed pages. The shared
+ * registry interns fonts without the tags of embedded subsets (e.g. "ABCDEF+Arial" as "Arial"), which differ between
+ * documents embedding the same font, so it grows with the number of distinct fonts rather than documents.
+ */
+public class FontCharacteristicsRegistry {
+    private static final FontCharacteristicsRegistry SHARED = new FontCharacteristicsRegistry(true);
+
+    private final boolean                                       stripSubsetTags;
+    private final Map<FontCharacteristics, FontCharacteristics> fonts    = new HashMap<>();
+    private final List<FontCharacteristics>                     byId     = new ArrayList<>();
+    private final Map<String, Integer>                          families = new HashMap<>();
+
+    public FontCharacteristicsRegistry() {
+        this(false);
+    }
+
+    private FontCharacteristicsRegistry(boolean stripSubsetTags) {
+        this.stripSubsetTags = stripSubsetTags;
+    }
+
+    /**
+     * @return process-wide registry, which interns fonts without subset tags
+     */
+    public static FontCharacteristicsRegistry shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return registered characteristics equal to the given ones
+     */
+    public synchronized FontCharacteristics intern(FontCharacteristics fontCharacteristics) {
+        if (fontCharacteristics.getRegistry() == this) {
+            return fontCharacteristics;
+        }
+        if (stripSubsetTags) {
+            fontCharacteristics = fontCharacteristics.withoutSubsetTag();
+        }
+        FontCharacteristics registered = fonts.get(fontCharacteristics);
+        if (registered == null) {
+            int familyId = FontCharacteristics.UNREGISTERED;
+            if (fontCharacteristics.getFontFamily() != null) {
+                familyId = families.computeIfAbsent(fontCharacteristics.getFontFamily(), key -> families.size());
+            }
+            registered = fontCharacteristics.register(this, byId.size(), familyId);
+            fonts.put(registered, registered);
+            byId.add(registered);
+        }
+        return registered;
+    }
+
+    /**
+     * @return characteristics with the given id
+     */
+    public synchronized FontCharacteristics get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * @return number of distinct characteristics
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+}
@@ -1,8 +1,12 @@
 package ru.icc.cells.tabbypdf.entities;
 
+import lombok.AccessLevel;
 import lombok.Getter;
+import lombok.Setter;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 /**
@@ -10,12 +14,26 @@ import java.util.stream.Collectors;
  */
 @Getter
 public class Page extends Rectangle {
-    private final List<TextChunk> originChunks;
-    private final List<TextChunk> characterChunks;
-    private final List<TextChunk> wordChunks;
-    private final List<Ruling>    rulings;
-    private final List<Rectangle> imageRegions;
-    private final int             rotation;
+    @Getter(AccessLevel.NONE)
+    private       List<TextChunk>           originChunks;
+    @Getter(AccessLevel.NONE)
+    private       List<TextChunk>           characterChunks;
+    @Getter(AccessLevel.NONE)
+    private       Supplier<List<TextChunk>> characterChunksSupplier;
+    private final List<TextChunk>           wordChunks;
+    private final List<Ruling>              rulings;
+    private final List<Rectangle>           imageRegions;
+    private final int                       rotation;
+    /**
+     * Tables of the logical structure of the document lying on the page, empty if the document is not tagged or the
+     * structure is not extracted
+     */
+    @Setter
+    private       List<TaggedTable>         taggedTables = new ArrayList<>();
+    /**
+     * Word chunks removed from the page as running headers or footers, see {@link #withoutWordChunks(boolean[])}
+     */
+    private       List<TextChunk>           removedChunks = new ArrayList<>();
 
     public Page(double left, double bottom, double right, double top, int rotation,
                 List<TextChunk> originChunks, List<TextChunk> characterChunks, List<TextChunk> wordChunks,
@@ -29,18 +47,78 @@ public class Page extends Rectangle {
         this.imageRegions = imageRegions;
     }
 
+    /**
+     * Creates a page with character chunks built on the first request. Origin and character chunks of such page are
+     * the same list.
+     */
+    public Page(double left, double bottom, double right, double top, int rotation,
+                Supplier<List<TextChunk>> characterChunks, List<TextChunk> wordChunks,
+                List<Ruling> rulings, List<Rectangle> imageRegions) {
+        super(left, bottom, right, top);
+        this.rotation = rotation;
+        this.characterChunksSupplier = characterChunks;
+        this.wordChunks = wordChunks;
+        this.rulings = rulings;
+        this.imageRegions = imageRegions;
+    }
+
+    public List<TextChunk> getOriginChunks() {
+        loadCharacterChunks();
+        return originChunks;
+    }
+
+    public List<TextChunk> getCharacterChunks() {
+        loadCharacterChunks();
+        return characterChunks;
+    }
+
+    private synchronized void loadCharacterChunks() {
+        if (characterChunksSupplier != null) {
+            characterChunks = characterChunksSupplier.get();
+            originChunks = characterChunks;
+            characterChunksSupplier = null;
+        }
+    }
+
+    private synchronized boolean isCharacterChunksLoaded() {
+        return characterChunksSupplier == null;
+    }
+
     public Page getRegion(Rectangle bound) {
-        List<TextChunk> originChunks    = getChunksWithinBound(this.originChunks, bound);
-        List<TextChunk> characterChunks = getChunksWithinBound(this.characterChunks, bound);
-        List<TextChunk> wordChunks      = getChunksWithinBound(this.wordChunks, bound);
+        List<TextChunk> wordChunks = getChunksWithinBound(this.wordChunks, bound);
         List<Ruling> rulings = this.rulings.stream()
             .filter(ruling -> bound.intersects(Rectangle.fromRuling(ruling)))
             .collect(Collectors.toList());
         List<Rectangle> imageRegions = this.imageRegions.stream()
             .filter(bound::intersects)
             .collect(Collectors.toList());
+        List<TaggedTable> taggedTables = this.taggedTables.stream()
+            .filter(bound::intersects)
+            .collect(Collectors.toList());
+        List<TextChunk> removedChunks = this.removedChunks.stream()
+            .filter(bound::intersects)
+            .collect(Collectors.toList());
+
+        if (!isCharacterChunksLoaded()) {
+            Page region = new Page(
+                bound.getLeft(),
+                bound.getBottom(),
+                bound.getRight(),
+                bound.getTop(),
+                rotation,
+                () -> getChunksWithinBound(getCharacterChunks(), bound),
+                wordChunks,
+                rulings,
+                imageRegions
+            );
+            region.setTaggedTables(taggedTables);
+            region.removedChunks = removedChunks;
+            return region;
+        }
 
-        return new Page(
+        List<TextChunk> originChunks    = getChunksWithinBound(this.originChunks, bound);
+        List<TextChunk> characterChunks = getChunksWithinBound(this.characterChunks, bound);
+        Page region = new Page(
             bound.getLeft(),
             bound.getBottom(),
             bound.getRight(),
@@ -52,9 +130,90 @@ public class Page extends Rectangle {
             rulings,
             imageRegions
         );
+        region.setTaggedTables(taggedTables);
+        region.removedChunks = removedChunks;
+        return region;
+    }
+
+    /**
+     * Creates a copy of the page without the given word chunks and the character chunks centered within them. The
+     * removed word chunks are added to the {@link #removedChunks} of the copy.
+     *
+     * @param removed flags of the word chunks to remove by their indices
+     */
+    public Page withoutWordChunks(boolean[] removed) {
+        List<TextChunk> wordChunks = new ArrayList<>();
+        List<TextChunk> removedChunks = new ArrayList<>(this.removedChunks);
+        for (int i = 0; i < this.wordChunks.size(); i++) {
+            (removed[i] ? removedChunks : wordChunks).add(this.wordChunks.get(i));
+        }
+        if (removedChunks.size() == this.removedChunks.size()) {
+            return this;
+        }
+        List<TextChunk> removedWords = new ArrayList<>(
+            removedChunks.subList(this.removedChunks.size(), removedChunks.size())
+        );
+
+        Page page;
+        if (!isCharacterChunksLoaded()) {
+            page = new Page(
+                getLeft(),
+                getBottom(),
+                getRight(),
+                getTop(),
+                rotation,
+                () -> getChunksOutside(getCharacterChunks(), removedWords),
+                inStorageOf(this.wordChunks, wordChunks),
+                rulings,
+                imageRegions
+            );
+        } else {
+            List<TextChunk> characterChunks = getChunksOutside(this.characterChunks, removedWords);
+            page = new Page(
+                getLeft(),
+                getBottom(),
+                getRight(),
+                getTop(),
+                rotation,
+                originChunks == this.characterChunks ? characterChunks : getChunksOutside(originChunks, removedWords),
+                characterChunks,
+                inStorageOf(this.wordChunks, wordChunks),
+                rulings,
+                imageRegions
+            );
+        }
+        page.setTaggedTables(taggedTables);
+        page.removedChunks = removedChunks;
+        return page;
+    }
+
+    private static List<TextChunk> getChunksOutside(List<TextChunk> chunks, List<TextChunk> removedWords) {
+        List<TextChunk> result = chunks.stream()
+            .filter(chunk -> removedWords.stream().noneMatch(word -> isCenteredWithin(chunk, word)))
+            .collect(Collectors.toList());
+        return inStorageOf(chunks, result);
+    }
+
+    private static boolean isCenteredWithin(Rectangle chunk, Rectangle bound) {
+        double x = (chunk.getLeft() + chunk.getRight()) / 2;
+        double y = (chunk.getBottom() + chunk.getTop()) / 2;
+        return x >= bound.getLeft() && x <= bound.getRight() && y >= bound.getBottom() && y <= bound.getTop();
+    }
+
+    /**
+     * @return the chunks kept in columns if the original chunks are
+     */
+    private static List<TextChunk> inStorageOf(List<TextChunk> original, List<TextChunk> chunks) {
+        if (original instanceof TextChunkColumns.View) {
+            return TextChunkColumns.of(chunks, ((TextChunkColumns.View) original).getColumns().getRegistry()).asList();
+        }
+        return chunks;
     }
 
     private static List<TextChunk> getChunksWithinBound(List<TextChunk> rectangles, Rectangle bound) {
+        if (rectangles instanceof TextChunkColumns.View) {
+            return ((TextChunkColumns.View) rectangles).getColumns().within(bound).asList();
+        }
         return rectangles.stream().filter(bound::intersects).collect(Collectors.toList());
     }
 }
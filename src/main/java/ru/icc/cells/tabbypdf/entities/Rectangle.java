@@ -43,16 +43,23 @@ public class Rectangle {
         return thisRect.contains(otherRect);
     }
 
+    /**
+     * Checks whether this rectangle intersects other rectangle, both rectangles are widened and heightened by 0.001.
+     * Gives the same result as {@link Rectangle2D#intersects(Rectangle2D)} without creating rectangles
+     */
     public <T extends Rectangle> boolean intersects(T other) {
-        double delta = 0.001;
-        Rectangle2D.Double thisRect  = new Rectangle2D.Double(left, bottom, right - left + delta, top - bottom + delta);
-        Rectangle2D.Double otherRect = new Rectangle2D.Double(
-            other.getLeft(),
-            other.getBottom(),
-            other.getRight() - other.getLeft() + delta,
-            other.getTop() - other.getBottom() + delta
-        );
-        return thisRect.intersects(otherRect);
+        double delta       = 0.001;
+        double width       = right - left + delta;
+        double height      = top - bottom + delta;
+        double otherLeft   = other.getLeft();
+        double otherBottom = other.getBottom();
+        double otherWidth  = other.getRight() - otherLeft + delta;
+        double otherHeight = other.getTop() - otherBottom + delta;
+        if (!(width > 0) || !(height > 0) || otherWidth <= 0 || otherHeight <= 0) {
+            return false;
+        }
+        return otherLeft + otherWidth > left && otherBottom + otherHeight > bottom
+            && otherLeft < left + width && otherBottom < bottom + height;
     }
 
     public void rotate(int rotation, double pageHeight, double pageWidth) {
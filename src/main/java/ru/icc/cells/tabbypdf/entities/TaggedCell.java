@@ -0,0 +1,26 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Cell of a {@link TaggedTable}. Position and spans are counted in rows and columns of the table
+ */
+@Getter
+@AllArgsConstructor
+public class TaggedCell {
+    private final int             row;
+    private final int             column;
+    private final int             rowSpan;
+    private final int             columnSpan;
+    /**
+     * Whether the cell is tagged as a header cell
+     */
+    private final boolean         header;
+    /**
+     * Word chunks of the page marked as the content of the cell, in the order they are shown
+     */
+    private final List<TextChunk> chunks;
+}
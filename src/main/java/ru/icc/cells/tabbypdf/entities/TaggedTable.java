@@ -0,0 +1,43 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Table read from the logical structure of a tagged document. Only the part of the table lying on the page is kept,
+ * so rows are counted from the first row with content on the page. Bounds of the table are the bounds of its chunks.
+ */
+@Getter
+public class TaggedTable extends Rectangle {
+    private final int              rowCount;
+    private final int              columnCount;
+    private final List<TaggedCell> cells;
+
+    /**
+     * @param cells cells of the table, at least one of them should have content
+     */
+    public TaggedTable(int rowCount, int columnCount, List<TaggedCell> cells) {
+        this.rowCount = rowCount;
+        this.columnCount = columnCount;
+        this.cells = cells;
+
+        boolean empty = true;
+        for (TaggedCell cell : cells) {
+            for (TextChunk chunk : cell.getChunks()) {
+                if (empty) {
+                    setLeft(chunk.getLeft());
+                    setBottom(chunk.getBottom());
+                    setRight(chunk.getRight());
+                    setTop(chunk.getTop());
+                    empty = false;
+                } else {
+                    join(chunk);
+                }
+            }
+        }
+        if (empty) {
+            throw new IllegalArgumentException("Tagged table has no content");
+        }
+    }
+}
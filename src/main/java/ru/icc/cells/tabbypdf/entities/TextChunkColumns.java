@@ -0,0 +1,256 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Columnar storage of text chunks. Coordinates are kept in primitive arrays, fonts as ids of a
+ * {@link FontCharacteristicsRegistry} and texts in one shared char buffer with offsets.
+ * <p>
+ * Columns are immutable. Use {@link #asList()} to pass them to code working with {@link TextChunk} lists, chunks are
+ * created on access then.
+ */
+public final class TextChunkColumns {
+    private final FontCharacteristicsRegistry registry;
+    private final int                         size;
+    private final double[]                    left;
+    private final double[]                    bottom;
+    private final double[]                    right;
+    private final double[]                    top;
+    private final int[]                       fontIds;
+    private final char[]                      text;
+    private final int[]                       textOffsets;
+
+    private TextChunkColumns(Builder builder) {
+        this.registry = builder.registry;
+        this.size = builder.size;
+        this.left = Arrays.copyOf(builder.left, size);
+        this.bottom = Arrays.copyOf(builder.bottom, size);
+        this.right = Arrays.copyOf(builder.right, size);
+        this.top = Arrays.copyOf(builder.top, size);
+        this.fontIds = Arrays.copyOf(builder.fontIds, size);
+        this.text = Arrays.copyOf(builder.text, builder.textOffsets[size]);
+        this.textOffsets = Arrays.copyOf(builder.textOffsets, size + 1);
+    }
+
+    public static Builder newBuilder(FontCharacteristicsRegistry registry) {
+        return new Builder(registry);
+    }
+
+    /**
+     * Copies chunks to columns. Font characteristics of the chunks are interned by the given registry.
+     */
+    public static TextChunkColumns of(List<TextChunk> chunks, FontCharacteristicsRegistry registry) {
+        if (chunks instanceof View && ((View) chunks).getColumns().registry == registry) {
+            return ((View) chunks).getColumns();
+        }
+        Builder builder = newBuilder(registry);
+        for (TextChunk chunk : chunks) {
+            builder.add(chunk);
+        }
+        return builder.build();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public double getLeft(int index) {
+        checkIndex(index);
+        return left[index];
+    }
+
+    public double getBottom(int index) {
+        checkIndex(index);
+        return bottom[index];
+    }
+
+    public double getRight(int index) {
+        checkIndex(index);
+        return right[index];
+    }
+
+    public double getTop(int index) {
+        checkIndex(index);
+        return top[index];
+    }
+
+    public int getFontId(int index) {
+        checkIndex(index);
+        return fontIds[index];
+    }
+
+    public FontCharacteristics getFontCharacteristics(int index) {
+        return registry.get(getFontId(index));
+    }
+
+    public int getTextLength(int index) {
+        checkIndex(index);
+        return textOffsets[index + 1] - textOffsets[index];
+    }
+
+    public char getChar(int index, int position) {
+        if (position < 0 || position >= getTextLength(index)) {
+            throw new IndexOutOfBoundsException("Position: " + position);
+        }
+        return text[textOffsets[index] + position];
+    }
+
+    public String getText(int index) {
+        checkIndex(index);
+        return new String(text, textOffsets[index], textOffsets[index + 1] - textOffsets[index]);
+    }
+
+    public FontCharacteristicsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * @return new chunk with data of the given row
+     */
+    public TextChunk getChunk(int index) {
+        return new TextChunk(
+            getText(index), left[index], bottom[index], right[index], top[index], getFontCharacteristics(index)
+        );
+    }
+
+    /**
+     * @return columns with the chunks intersecting the bound
+     */
+    public TextChunkColumns within(Rectangle bound) {
+        Builder builder = newBuilder(registry);
+        Rectangle chunk = new Rectangle();
+        for (int i = 0; i < size; i++) {
+            chunk.setLeft(left[i]);
+            chunk.setBottom(bottom[i]);
+            chunk.setRight(right[i]);
+            chunk.setTop(top[i]);
+            if (bound.intersects(chunk)) {
+                builder.add(text, textOffsets[i], textOffsets[i + 1] - textOffsets[i],
+                    left[i], bottom[i], right[i], top[i], fontIds[i]
+                );
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return unmodifiable list view of the columns
+     */
+    public View asList() {
+        return new View(this);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+    }
+
+    /**
+     * List of text chunks backed by columns. Every {@link #get(int)} call creates a new chunk, so changes of a chunk
+     * are not written back to the columns.
+     */
+    public static class View extends AbstractList<TextChunk> implements RandomAccess {
+        private final TextChunkColumns columns;
+
+        private View(TextChunkColumns columns) {
+            this.columns = columns;
+        }
+
+        public TextChunkColumns getColumns() {
+            return columns;
+        }
+
+        @Override
+        public TextChunk get(int index) {
+            return columns.getChunk(index);
+        }
+
+        @Override
+        public int size() {
+            return columns.size;
+        }
+    }
+
+    public static class Builder {
+        private final FontCharacteristicsRegistry registry;
+
+        private int      size;
+        private double[] left        = new double[16];
+        private double[] bottom      = new double[16];
+        private double[] right       = new double[16];
+        private double[] top         = new double[16];
+        private int[]    fontIds     = new int[16];
+        private char[]   text        = new char[64];
+        private int[]    textOffsets = new int[17];
+
+        private Builder(FontCharacteristicsRegistry registry) {
+            this.registry = registry;
+        }
+
+        public Builder add(TextChunk chunk) {
+            return add(chunk.getText(), chunk.getLeft(), chunk.getBottom(), chunk.getRight(), chunk.getTop(),
+                chunk.getFontCharacteristics()
+            );
+        }
+
+        public Builder add(String chunkText, double left, double bottom, double right, double top,
+                           FontCharacteristics fontCharacteristics) {
+            ensureTextCapacity(chunkText.length());
+            chunkText.getChars(0, chunkText.length(), text, textOffsets[size]);
+            return addRow(chunkText.length(), left, bottom, right, top, getFontId(fontCharacteristics));
+        }
+
+        public Builder add(char[] chars, int offset, int length, double left, double bottom, double right,
+                           double top, FontCharacteristics fontCharacteristics) {
+            return add(chars, offset, length, left, bottom, right, top, getFontId(fontCharacteristics));
+        }
+
+        private Builder add(char[] chars, int offset, int length, double left, double bottom, double right,
+                            double top, int fontId) {
+            ensureTextCapacity(length);
+            System.arraycopy(chars, offset, text, textOffsets[size], length);
+            return addRow(length, left, bottom, right, top, fontId);
+        }
+
+        private Builder addRow(int textLength, double left, double bottom, double right, double top, int fontId) {
+            if (size == this.left.length) {
+                int capacity = size * 2;
+                this.left = Arrays.copyOf(this.left, capacity);
+                this.bottom = Arrays.copyOf(this.bottom, capacity);
+                this.right = Arrays.copyOf(this.right, capacity);
+                this.top = Arrays.copyOf(this.top, capacity);
+                this.fontIds = Arrays.copyOf(this.fontIds, capacity);
+                this.textOffsets = Arrays.copyOf(this.textOffsets, capacity + 1);
+            }
+            this.left[size] = left;
+            this.bottom[size] = bottom;
+            this.right[size] = right;
+            this.top[size] = top;
+            this.fontIds[size] = fontId;
+            this.textOffsets[size + 1] = textOffsets[size] + textLength;
+            size++;
+            return this;
+        }
+
+        private int getFontId(FontCharacteristics fontCharacteristics) {
+            return fontCharacteristics.getRegistry() == registry
+                ? fontCharacteristics.getId()
+                : registry.intern(fontCharacteristics).getId();
+        }
+
+        private void ensureTextCapacity(int length) {
+            int required = textOffsets[size] + length;
+            if (required > text.length) {
+                text = Arrays.copyOf(text, Math.max(required, text.length * 2));
+            }
+        }
+
+        public TextChunkColumns build() {
+            return new TextChunkColumns(this);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the bytes of a buffer from its position 0 to its limit, the position of the buffer is used as the
+ * read position
+ */
+class ByteBufferRandomAccessRead implements RandomAccessRead {
+    private final ByteBuffer buffer;
+    private       boolean    closed;
+
+    ByteBufferRandomAccessRead(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b) {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) {
+        if (length == 0) {
+            return 0;
+        }
+        if (!buffer.hasRemaining()) {
+            return -1;
+        }
+        int read = Math.min(length, buffer.remaining());
+        buffer.get(b, offset, read);
+        return read;
+    }
+
+    @Override
+    public long getPosition() {
+        return buffer.position();
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        buffer.position((int) Math.min(position, buffer.limit()));
+    }
+
+    @Override
+    public long length() {
+        return buffer.limit();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public int peek() {
+        return buffer.hasRemaining() ? buffer.get(buffer.position()) & 0xff : -1;
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(buffer.position() - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        if (buffer.remaining() < length) {
+            throw new EOFException("Premature end of buffer");
+        }
+        byte[] b = new byte[length];
+        buffer.get(b);
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() {
+        return !buffer.hasRemaining();
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,74 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessBuffer;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Bytes of a PDF document. A source may be loaded several times, by every worker of parallel extraction and whenever
+ * the document is reopened, so each load reads the document independently from its start.
+ */
+public interface DocumentSource {
+    /**
+     * Loads a new copy of the document. The caller closes the document
+     */
+    PDDocument load(MemoryUsageSetting memoryUsageSetting) throws IOException;
+
+    /**
+     * @return new stream of the document bytes, used to compute the page cache key of the document
+     */
+    InputStream openStream() throws IOException;
+
+    static DocumentSource of(File file) {
+        return new DocumentSource() {
+            @Override
+            public PDDocument load(MemoryUsageSetting memoryUsageSetting) throws IOException {
+                return PDDocument.load(file, memoryUsageSetting);
+            }
+
+            @Override
+            public InputStream openStream() throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+    }
+
+    /**
+     * Document in a byte array, which is used without copying and should not be changed
+     */
+    static DocumentSource of(byte[] bytes) {
+        return new RandomAccessDocumentSource(() -> new RandomAccessBuffer(bytes));
+    }
+
+    /**
+     * Document in the remaining bytes of a heap, direct or mapped buffer. The buffer is used without copying, its
+     * position and limit are not changed
+     */
+    static DocumentSource of(ByteBuffer buffer) {
+        ByteBuffer bytes = buffer.slice();
+        return new RandomAccessDocumentSource(() -> new ByteBufferRandomAccessRead(bytes.duplicate()));
+    }
+
+    /**
+     * Reads the stream to the end into memory, the stream is not closed
+     */
+    static DocumentSource of(InputStream input) throws IOException {
+        return of(IOUtils.toByteArray(input));
+    }
+
+    /**
+     * Document in a source of random access, which is shared by all loads of the document, so reads of different
+     * loads are serialized. The source is not closed
+     */
+    static DocumentSource of(RandomAccessRead source) {
+        return new RandomAccessDocumentSource(() -> new SharedRandomAccessRead(source));
+    }
+}
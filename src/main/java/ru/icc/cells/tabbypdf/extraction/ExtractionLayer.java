@@ -0,0 +1,28 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+/**
+ * Kinds of page content, which can be extracted by {@link PdfDataExtractor}
+ */
+public enum ExtractionLayer {
+    /**
+     * Character chunks, one per glyph
+     */
+    GLYPHS,
+    /**
+     * Word chunks
+     */
+    WORDS,
+    /**
+     * Rulings built from path segments and rectangles
+     */
+    RULINGS,
+    /**
+     * Regions of images
+     */
+    IMAGES,
+    /**
+     * Tables of the logical structure of tagged documents, see {@link ru.icc.cells.tabbypdf.entities.TaggedTable}.
+     * Words are extracted too if this layer is requested
+     */
+    STRUCTURE
+}
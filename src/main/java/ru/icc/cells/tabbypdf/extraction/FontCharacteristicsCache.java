@@ -0,0 +1,64 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristicsRegistry;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import static ru.icc.cells.tabbypdf.utils.PdfUtils.buildFontCharacteristics;
+
+/**
+ * Provides registered font characteristics of glyphs and words. Font descriptors are read once per font, the
+ * characteristics of the previous glyph of the same font are reused unless the font is shown with a new size or space
+ * width. Descriptors of fonts shared by documents are kept by the {@link SharedFontCache}.
+ * <p>
+ * The cache is not thread safe, every worker should have its own cache over a shared registry.
+ */
+class FontCharacteristicsCache {
+    private final FontCharacteristicsRegistry registry;
+    private final SharedFontCache             sharedFonts;
+    private final Map<PDFont, FontEntry>      fonts = new IdentityHashMap<>();
+
+    FontCharacteristicsCache(FontCharacteristicsRegistry registry) {
+        this(registry, null);
+    }
+
+    FontCharacteristicsCache(FontCharacteristicsRegistry registry, SharedFontCache sharedFonts) {
+        this.registry = registry;
+        this.sharedFonts = sharedFonts;
+    }
+
+    FontCharacteristicsRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Forgets all fonts, should be called when fonts of the document are released
+     */
+    void clear() {
+        fonts.clear();
+    }
+
+    FontCharacteristics get(PDFont font, double size, double spaceWidth) {
+        FontEntry entry = fonts.computeIfAbsent(font, key -> new FontEntry());
+        if (entry.descriptor == null) {
+            entry.descriptor = sharedFonts != null ? sharedFonts.getDescriptor(font)
+                                                   : buildFontCharacteristics(font, 0, 0);
+        }
+        if (entry.last == null || entry.size != size || entry.spaceWidth != spaceWidth) {
+            entry.last = registry.intern(entry.descriptor.withSize(size, spaceWidth));
+            entry.size = size;
+            entry.spaceWidth = spaceWidth;
+        }
+        return entry.last;
+    }
+
+    private static class FontEntry {
+        private FontCharacteristics descriptor;
+        private FontCharacteristics last;
+        private double              size;
+        private double              spaceWidth;
+    }
+}
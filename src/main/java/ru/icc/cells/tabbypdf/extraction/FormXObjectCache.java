@@ -0,0 +1,98 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content extracted from form XObjects of a document, so that a form drawn on many pages in the same state is
+ * interpreted only once. The least recently used entries are evicted when the cache is full.
+ * <p>
+ * Keys refer to parsed objects of the document, so the cache should be cleared when the document or its resources
+ * are released.
+ */
+class FormXObjectCache {
+    private final Map<Key, PdfContentExtractor.FormContent> entries;
+
+    FormXObjectCache(int maxSize) {
+        this.entries = new Entries(maxSize);
+    }
+
+    PdfContentExtractor.FormContent get(Key key) {
+        return entries.get(key);
+    }
+
+    void put(Key key, PdfContentExtractor.FormContent content) {
+        entries.put(key, content);
+    }
+
+    void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Entries in the access order, the least recently used entry is removed when the size is exceeded
+     */
+    private static final class Entries extends LinkedHashMap<Key, PdfContentExtractor.FormContent> {
+        private static final long serialVersionUID = 1L;
+
+        private final int maxSize;
+
+        private Entries(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, PdfContentExtractor.FormContent> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    /**
+     * State in which a form is drawn. Objects are compared by identity, numbers by their exact values.
+     */
+    static final class Key {
+        private final Object[] objects;
+        private final float[]  values;
+        private final int[]    markedContent;
+        private final int      hash;
+
+        Key(Object[] objects, float[] values, int[] markedContent) {
+            this.objects = objects;
+            this.values = values;
+            this.markedContent = markedContent;
+            int hash = Arrays.hashCode(values) * 31 + Arrays.hashCode(markedContent);
+            for (Object object : objects) {
+                hash = hash * 31 + System.identityHashCode(object);
+            }
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            if (hash != key.hash || objects.length != key.objects.length || !Arrays.equals(values, key.values)
+                || !Arrays.equals(markedContent, key.markedContent)) {
+                return false;
+            }
+            for (int i = 0; i < objects.length; i++) {
+                if (objects[i] != key.objects[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
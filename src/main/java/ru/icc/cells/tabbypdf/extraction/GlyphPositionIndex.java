@@ -0,0 +1,108 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import java.util.Arrays;
+
+/**
+ * Positions of shown glyphs hashed by their text and a cell of a coarse grid, so a glyph shown again at (almost) the
+ * same position is found in constant expected time. Entries are kept in primitive arrays and chained by index.
+ */
+class GlyphPositionIndex {
+    private static final float CELL_SIZE = 4f;
+    /**
+     * Ranges wider than this number of cells are checked by a scan of all entries
+     */
+    private static final int   MAX_CELL_RANGE = 16;
+
+    private int[]    heads = new int[256];
+    private int      size;
+    private String[] texts  = new String[64];
+    private float[]  xs     = new float[64];
+    private float[]  ys     = new float[64];
+    private int[]    hashes = new int[64];
+    private int[]    next   = new int[64];
+
+    /**
+     * Adds the glyph unless the same text is already indexed within [x - tolerance, x + tolerance) and
+     * [y - tolerance, y + tolerance).
+     *
+     * @return true if the glyph is a duplicate and was not added
+     */
+    boolean addUnlessDuplicate(String text, float x, float y, float tolerance) {
+        float minX = x - tolerance;
+        float maxX = x + tolerance;
+        float minY = y - tolerance;
+        float maxY = y + tolerance;
+
+        if (Float.compare(minX, maxX) < 0 && Float.compare(minY, maxY) < 0) {
+            int minCellX = cell(minX);
+            int maxCellX = cell(maxX);
+            int minCellY = cell(minY);
+            int maxCellY = cell(maxY);
+            if ((long) maxCellX - minCellX > MAX_CELL_RANGE || (long) maxCellY - minCellY > MAX_CELL_RANGE) {
+                for (int i = 0; i < size; i++) {
+                    if (matches(i, text, minX, maxX, minY, maxY)) {
+                        return true;
+                    }
+                }
+            } else {
+                for (int cellX = minCellX; cellX <= maxCellX; cellX++) {
+                    for (int cellY = minCellY; cellY <= maxCellY; cellY++) {
+                        int hash = hash(text, cellX, cellY);
+                        for (int i = heads[hash & (heads.length - 1)] - 1; i >= 0; i = next[i] - 1) {
+                            if (hashes[i] == hash && matches(i, text, minX, maxX, minY, maxY)) {
+                                return true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        add(text, x, y, hash(text, cell(x), cell(y)));
+        return false;
+    }
+
+    private boolean matches(int i, String text, float minX, float maxX, float minY, float maxY) {
+        return Float.compare(xs[i], minX) >= 0 && Float.compare(xs[i], maxX) < 0
+            && Float.compare(ys[i], minY) >= 0 && Float.compare(ys[i], maxY) < 0
+            && texts[i].equals(text);
+    }
+
+    private void add(String text, float x, float y, int hash) {
+        if (size == texts.length) {
+            int capacity = size * 2;
+            texts = Arrays.copyOf(texts, capacity);
+            xs = Arrays.copyOf(xs, capacity);
+            ys = Arrays.copyOf(ys, capacity);
+            hashes = Arrays.copyOf(hashes, capacity);
+            next = Arrays.copyOf(next, capacity);
+        }
+        if (size * 4 >= heads.length * 3) {
+            heads = new int[heads.length * 2];
+            for (int i = 0; i < size; i++) {
+                link(i);
+            }
+        }
+        texts[size] = text;
+        xs[size] = x;
+        ys[size] = y;
+        hashes[size] = hash;
+        link(size);
+        size++;
+    }
+
+    private void link(int i) {
+        int bucket = hashes[i] & (heads.length - 1);
+        next[i] = heads[bucket];
+        heads[bucket] = i + 1;
+    }
+
+    private static int cell(float coordinate) {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    private static int hash(String text, int cellX, int cellY) {
+        int hash = (text.hashCode() * 31 + cellX) * 31 + cellY;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,404 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristicsRegistry;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.entities.TextChunkColumns;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Directory of extracted pages stored in a compact binary format. Files are named by the hash of the document content
+ * and the extractor configuration and by the {@link #VERSION}, and are read through memory mapping.
+ * <p>
+ * File layout: header (magic, version, number of pages, offsets of the page table and the font table), pages, table
+ * of page offsets and table of fonts. A page consists of its bounds and rotation, glyphs, words, rulings, image
+ * regions and tagged tables. Text chunks refer to fonts by their index in the font table. Character chunks
+ * of a cached page are decoded only when they are requested.
+ */
+class PageCache {
+    /**
+     * Version of the format and of the extraction results, should be changed whenever either of them changes
+     */
+    static final int VERSION = 2;
+
+    private static final int MAGIC       = 0x54425043;
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8 + 8;
+
+    private final File directory;
+
+    PageCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @return key of the document extracted with the given configuration
+     */
+    String getKey(DocumentSource document, PdfDataExtractorConfiguration cnf) {
+        String configuration = cnf.layers + ":" + cnf.normalizeRulings + ":" + cnf.rulingTolerance + ":"
+            + cnf.skipArtifacts;
+        if (!cnf.stringsToRemove.isEmpty()) {
+            configuration += ":" + cnf.stringsToRemove;
+        }
+        try (InputStream input = document.openStream()) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                digest.update(buffer, 0, read);
+            }
+            // the configuration is prefixed with its length, so it is not confused with the end of the document
+            byte[] options = configuration.getBytes(StandardCharsets.UTF_8);
+            digest.update(ByteBuffer.allocate(4).putInt(options.length).array());
+            digest.update(options);
+            StringBuilder key = new StringBuilder();
+            for (byte b : digest.digest()) {
+                key.append(String.format("%02x", b));
+            }
+            return key.append("-v").append(VERSION).toString();
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return reader of the cached pages or null if there are no valid pages for the key
+     */
+    Reader open(String key, FontCharacteristicsRegistry registry, boolean useColumnarStorage) {
+        File file = new File(directory, key + ".pages");
+        if (!file.isFile()) {
+            return null;
+        }
+        try (RandomAccessFile input = new RandomAccessFile(file, "r")) {
+            ByteBuffer buffer = input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, input.length());
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            return new Reader(buffer, registry, useColumnarStorage);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return writer of pages, which become visible to readers only when the writer is committed
+     */
+    Writer create(String key) {
+        try {
+            Files.createDirectories(directory.toPath());
+            return new Writer(new File(directory, key + ".pages"), File.createTempFile(key, ".tmp", directory));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    static class Reader {
+        private final ByteBuffer                  buffer;
+        private final FontCharacteristicsRegistry registry;
+        private final int                         numberOfPages;
+        private final int                         pageTableOffset;
+        private final FontCharacteristics[]       fonts;
+        private final boolean                     useColumnarStorage;
+
+        private Reader(ByteBuffer buffer, FontCharacteristicsRegistry registry, boolean useColumnarStorage) {
+            this.buffer = buffer;
+            this.registry = registry;
+            this.useColumnarStorage = useColumnarStorage;
+            this.numberOfPages = buffer.getInt();
+            this.pageTableOffset = (int) buffer.getLong();
+            ByteBuffer input = buffer.duplicate();
+            input.position((int) buffer.getLong());
+            this.fonts = new FontCharacteristics[input.getInt()];
+            for (int i = 0; i < fonts.length; i++) {
+                fonts[i] = registry.intern(readFont(input));
+            }
+        }
+
+        int size() {
+            return numberOfPages;
+        }
+
+        Page read(int pageIndex) {
+            ByteBuffer input = buffer.duplicate();
+            input.position((int) buffer.getLong(pageTableOffset + pageIndex * 8));
+
+            double left = input.getDouble();
+            double bottom = input.getDouble();
+            double right = input.getDouble();
+            double top = input.getDouble();
+            int rotation = input.getInt();
+
+            int glyphsOffset = input.position();
+            input.position(glyphsOffset + input.getInt());
+            TextChunkColumns wordColumns = readChunks(input);
+            List<TextChunk> wordChunks = toList(wordColumns);
+
+            List<Ruling> rulings = new ArrayList<>();
+            for (int i = input.getInt(); i > 0; i--) {
+                rulings.add(new Ruling(input.getDouble(), input.getDouble(), input.getDouble(), input.getDouble()));
+            }
+            List<Rectangle> imageRegions = new ArrayList<>();
+            for (int i = input.getInt(); i > 0; i--) {
+                imageRegions.add(
+                    new Rectangle(input.getDouble(), input.getDouble(), input.getDouble(), input.getDouble())
+                );
+            }
+
+            List<TaggedTable> taggedTables = new ArrayList<>();
+            for (int i = input.getInt(); i > 0; i--) {
+                int rowCount = input.getInt();
+                int columnCount = input.getInt();
+                List<TaggedCell> cells = new ArrayList<>();
+                for (int j = input.getInt(); j > 0; j--) {
+                    int row = input.getInt();
+                    int column = input.getInt();
+                    int rowSpan = input.getInt();
+                    int columnSpan = input.getInt();
+                    boolean header = input.getInt() != 0;
+                    cells.add(new TaggedCell(row, column, rowSpan, columnSpan, header, toList(readChunks(input))));
+                }
+                taggedTables.add(new TaggedTable(rowCount, columnCount, cells));
+            }
+
+            Page page = new Page(left, bottom, right, top, rotation, () -> {
+                ByteBuffer glyphs = buffer.duplicate();
+                glyphs.position(glyphsOffset + 4);
+                return toList(readChunks(glyphs));
+            }, wordChunks, rulings, imageRegions);
+            page.setTaggedTables(taggedTables);
+            return page;
+        }
+
+        private List<TextChunk> toList(TextChunkColumns columns) {
+            return useColumnarStorage ? columns.asList() : new ArrayList<>(columns.asList());
+        }
+
+        private TextChunkColumns readChunks(ByteBuffer input) {
+            TextChunkColumns.Builder builder = TextChunkColumns.newBuilder(registry);
+            char[] text = new char[16];
+            for (int i = input.getInt(); i > 0; i--) {
+                double left = input.getDouble();
+                double bottom = input.getDouble();
+                double right = input.getDouble();
+                double top = input.getDouble();
+                FontCharacteristics font = fonts[input.getInt()];
+                int length = input.getInt();
+                if (length > text.length) {
+                    text = new char[Math.max(length, text.length * 2)];
+                }
+                input.asCharBuffer().get(text, 0, length);
+                input.position(input.position() + length * 2);
+                builder.add(text, 0, length, left, bottom, right, top, font);
+            }
+            return builder.build();
+        }
+
+        private static FontCharacteristics readFont(ByteBuffer input) {
+            int flags = input.getInt();
+            return FontCharacteristics.newBuilder()
+                .setFontName(readString(input))
+                .setFontFamily(readString(input))
+                .setSize(input.getDouble())
+                .setSpaceWidth(input.getDouble())
+                .setAllCap((flags & 1) != 0)
+                .setFixedPitch((flags & 1 << 1) != 0)
+                .setForceBold((flags & 1 << 2) != 0)
+                .setItalic((flags & 1 << 3) != 0)
+                .setNonSymbolic((flags & 1 << 4) != 0)
+                .setScript((flags & 1 << 5) != 0)
+                .setSerif((flags & 1 << 6) != 0)
+                .setSmallCap((flags & 1 << 7) != 0)
+                .setSymbolic((flags & 1 << 8) != 0)
+                .build();
+        }
+
+        private static String readString(ByteBuffer input) {
+            int length = input.getInt();
+            if (length < 0) {
+                return null;
+            }
+            char[] chars = new char[length];
+            input.asCharBuffer().get(chars);
+            input.position(input.position() + length * 2);
+            return new String(chars);
+        }
+    }
+
+    /**
+     * Writes pages in document order. Pages should be added one by one before the writer is committed.
+     */
+    static class Writer {
+        private final File                        file;
+        private final File                        temporaryFile;
+        private final DataOutputStream            output;
+        private final FontCharacteristicsRegistry fonts       = new FontCharacteristicsRegistry();
+        private final List<Long>                  pageOffsets = new ArrayList<>();
+        private       boolean                     closed;
+
+        private Writer(File file, File temporaryFile) throws IOException {
+            this.file = file;
+            this.temporaryFile = temporaryFile;
+            this.output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)));
+            output.write(new byte[HEADER_SIZE]);
+        }
+
+        void add(Page page) {
+            try {
+                pageOffsets.add((long) output.size());
+                output.writeDouble(page.getLeft());
+                output.writeDouble(page.getBottom());
+                output.writeDouble(page.getRight());
+                output.writeDouble(page.getTop());
+                output.writeInt(page.getRotation());
+
+                // glyphs are prefixed with their size, so they can be skipped when the page is read
+                TextChunkColumns glyphs = TextChunkColumns.of(page.getCharacterChunks(), fonts);
+                int glyphsSize = 4 + glyphs.size() * (4 * 8 + 4 + 4);
+                for (int i = 0; i < glyphs.size(); i++) {
+                    glyphsSize += glyphs.getTextLength(i) * 2;
+                }
+                output.writeInt(4 + glyphsSize);
+                writeChunks(glyphs);
+                writeChunks(TextChunkColumns.of(page.getWordChunks(), fonts));
+
+                output.writeInt(page.getRulings().size());
+                for (Ruling ruling : page.getRulings()) {
+                    output.writeDouble(ruling.getStartLocation().getX());
+                    output.writeDouble(ruling.getStartLocation().getY());
+                    output.writeDouble(ruling.getEndLocation().getX());
+                    output.writeDouble(ruling.getEndLocation().getY());
+                }
+                output.writeInt(page.getImageRegions().size());
+                for (Rectangle imageRegion : page.getImageRegions()) {
+                    output.writeDouble(imageRegion.getLeft());
+                    output.writeDouble(imageRegion.getBottom());
+                    output.writeDouble(imageRegion.getRight());
+                    output.writeDouble(imageRegion.getTop());
+                }
+                output.writeInt(page.getTaggedTables().size());
+                for (TaggedTable table : page.getTaggedTables()) {
+                    output.writeInt(table.getRowCount());
+                    output.writeInt(table.getColumnCount());
+                    output.writeInt(table.getCells().size());
+                    for (TaggedCell cell : table.getCells()) {
+                        output.writeInt(cell.getRow());
+                        output.writeInt(cell.getColumn());
+                        output.writeInt(cell.getRowSpan());
+                        output.writeInt(cell.getColumnSpan());
+                        output.writeInt(cell.isHeader() ? 1 : 0);
+                        writeChunks(TextChunkColumns.of(cell.getChunks(), fonts));
+                    }
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Writes tables and makes the file visible to readers
+         */
+        void commit() {
+            try {
+                long pageTableOffset = output.size();
+                for (long pageOffset : pageOffsets) {
+                    output.writeLong(pageOffset);
+                }
+                long fontTableOffset = output.size();
+                output.writeInt(fonts.size());
+                for (int i = 0; i < fonts.size(); i++) {
+                    writeFont(fonts.get(i));
+                }
+                output.close();
+                closed = true;
+
+                try (RandomAccessFile randomAccessFile = new RandomAccessFile(temporaryFile, "rw")) {
+                    randomAccessFile.writeInt(MAGIC);
+                    randomAccessFile.writeInt(VERSION);
+                    randomAccessFile.writeInt(pageOffsets.size());
+                    randomAccessFile.writeLong(pageTableOffset);
+                    randomAccessFile.writeLong(fontTableOffset);
+                }
+                Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                abort();
+                throw new RuntimeException(e);
+            }
+        }
+
+        /**
+         * Discards written pages
+         */
+        void abort() {
+            try {
+                if (!closed) {
+                    closed = true;
+                    output.close();
+                }
+                Files.deleteIfExists(temporaryFile.toPath());
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        private void writeChunks(TextChunkColumns chunks) throws IOException {
+            output.writeInt(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                output.writeDouble(chunks.getLeft(i));
+                output.writeDouble(chunks.getBottom(i));
+                output.writeDouble(chunks.getRight(i));
+                output.writeDouble(chunks.getTop(i));
+                output.writeInt(chunks.getFontId(i));
+                output.writeInt(chunks.getTextLength(i));
+                for (int j = 0; j < chunks.getTextLength(i); j++) {
+                    output.writeChar(chunks.getChar(i, j));
+                }
+            }
+        }
+
+        private void writeFont(FontCharacteristics font) throws IOException {
+            int flags = (font.isAllCap() ? 1 : 0)
+                | (font.isFixedPitch() ? 1 << 1 : 0)
+                | (font.isForceBold() ? 1 << 2 : 0)
+                | (font.isItalic() ? 1 << 3 : 0)
+                | (font.isNonSymbolic() ? 1 << 4 : 0)
+                | (font.isScript() ? 1 << 5 : 0)
+                | (font.isSerif() ? 1 << 6 : 0)
+                | (font.isSmallCap() ? 1 << 7 : 0)
+                | (font.isSymbolic() ? 1 << 8 : 0);
+            output.writeInt(flags);
+            writeString(font.getFontName());
+            writeString(font.getFontFamily());
+            output.writeDouble(font.getSize());
+            output.writeDouble(font.getSpaceWidth());
+        }
+
+        private void writeString(String string) throws IOException {
+            if (string == null) {
+                output.writeInt(-1);
+            } else {
+                output.writeInt(string.length());
+                output.writeChars(string);
+            }
+        }
+    }
+}
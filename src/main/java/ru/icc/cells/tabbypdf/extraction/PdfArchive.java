@@ -0,0 +1,155 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.function.BiConsumer;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * PDF documents packed in a ZIP or TAR archive, read without unpacking the archive to disk. Stored entries are mapped
+ * and read in place. Compressed entries are inflated into memory, entries larger than the memory limit are inflated
+ * into scratch buffers keeping only the limit in memory.
+ */
+public abstract class PdfArchive implements Closeable {
+    private final FileChannel channel;
+    private final long        maxMainMemoryBytes;
+
+    PdfArchive(File file, long maxMainMemoryBytes) throws IOException {
+        this.channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        this.maxMainMemoryBytes = maxMainMemoryBytes;
+    }
+
+    /**
+     * @return true if the file is a ZIP or TAR archive judging by its extension
+     */
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".zip") || name.endsWith(".tar");
+    }
+
+    /**
+     * Opens a ZIP or TAR archive
+     *
+     * @param maxMainMemoryBytes memory in bytes for an inflated entry, the rest of the entry is kept in scratch files
+     */
+    public static PdfArchive open(File file, long maxMainMemoryBytes) {
+        try {
+            if (file.getName().toLowerCase().endsWith(".zip")) {
+                return new ZipPdfArchive(file, maxMainMemoryBytes);
+            }
+            return new TarPdfArchive(file, maxMainMemoryBytes);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Passes PDF documents of the archive to the consumer in archive order together with their entry names. Buffers
+     * of a document are released when the consumer returns, so the document should not be used afterwards.
+     */
+    public void forEachDocument(BiConsumer<String, DocumentSource> consumer) {
+        try {
+            readEntries(consumer);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    abstract void readEntries(BiConsumer<String, DocumentSource> consumer) throws IOException;
+
+    static boolean isDocument(String entryName) {
+        return entryName.toLowerCase().endsWith(".pdf");
+    }
+
+    /**
+     * Maps a stored entry
+     */
+    DocumentSource map(long offset, long size) throws IOException {
+        return DocumentSource.of(mapRegion(offset, size));
+    }
+
+    /**
+     * Inflates a deflated entry and passes it to the consumer
+     */
+    void inflate(String name, long offset, long compressedSize, long size,
+                 BiConsumer<String, DocumentSource> consumer) throws IOException {
+        Inflater inflater = new Inflater(true);
+        try (InputStream input = new InflaterInputStream(
+            new RandomAccessInputStream(new ByteBufferRandomAccessRead(mapRegion(offset, compressedSize))), inflater,
+            64 * 1024
+        )) {
+            if (size >= 0 && (maxMainMemoryBytes < 0 || size <= maxMainMemoryBytes)) {
+                consumer.accept(name, DocumentSource.of(readFully(input, (int) size)));
+                return;
+            }
+            try (ScratchFile scratchFile = new ScratchFile(getMemoryUsageSetting())) {
+                RandomAccessRead buffer = scratchFile.createBuffer(input);
+                consumer.accept(name, DocumentSource.of(buffer));
+            }
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private MemoryUsageSetting getMemoryUsageSetting() {
+        if (maxMainMemoryBytes < 0) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        return MemoryUsageSetting.setupMixed(maxMainMemoryBytes);
+    }
+
+    private ByteBuffer mapRegion(long offset, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Archive entry of " + size + " bytes is too large");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size);
+    }
+
+    private static byte[] readFully(InputStream input, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        int offset = 0;
+        while (offset < size) {
+            int read = input.read(bytes, offset, size - offset);
+            if (read < 0) {
+                throw new EOFException("Archive entry is shorter than declared");
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads bytes of the archive at the given position
+     */
+    ByteBuffer read(long position, int size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException("Unexpected end of archive");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,769 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import lombok.Getter;
+import org.apache.fontbox.ttf.TrueTypeFont;
+import org.apache.fontbox.util.BoundingBox;
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.contentstream.PDFStreamEngine;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.contentstream.operator.OperatorProcessor;
+import org.apache.pdfbox.contentstream.operator.graphics.DrawObject;
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDCIDFont;
+import org.apache.pdfbox.pdmodel.font.PDCIDFontType2;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDFontDescriptor;
+import org.apache.pdfbox.pdmodel.font.PDSimpleFont;
+import org.apache.pdfbox.pdmodel.font.PDTrueTypeFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType3Font;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDTransparencyGroup;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.pdmodel.graphics.state.PDGraphicsState;
+import org.apache.pdfbox.pdmodel.graphics.state.PDTextState;
+import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.util.Matrix;
+import org.apache.pdfbox.util.Vector;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Point2D;
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Collects rulings and image regions of a page and streams its glyphs to a consumer in a single walk of its content
+ * stream. Glyphs are passed together with the id of the marked content containing them, if marked content is tracked.
+ * <p>
+ * Glyph positions are computed the same way as {@link org.apache.pdfbox.text.PDFTextStripper} does, including
+ * suppression of duplicate overlapping glyphs and merging of diacritics, but without sorting, article beads,
+ * paragraph detection and text output.
+ * <p>
+ * Content of form XObjects is recorded in the {@link FormXObjectCache}, if it is given, and replayed when the same
+ * form is drawn in the same state again.
+ */
+class PdfContentExtractor extends PDFGraphicsStreamEngine {
+    private static final String[] PATH_CONSTRUCTION_OPERATORS = {"m", "l", "c", "v", "y", "h", "re"};
+
+    @Getter
+    private final List<Ruling>    rulings      = new ArrayList<>();
+    @Getter
+    private final List<Rectangle> imageRegions = new ArrayList<>();
+
+    private final GlyphConsumer glyphConsumer;
+    /**
+     * Last glyph, which is not passed to the consumer yet, because the next glyph may be its diacritic
+     */
+    private       TextPosition  lastTextPosition;
+    private       int           lastMarkedContentId;
+    /**
+     * Marked content ids of the open marked content sequences, a sequence without an id inherits the enclosing one
+     */
+    private       int[]         markedContentIds = new int[8];
+    private       int           markedContentDepth;
+    /**
+     * Depth of the outermost open artifact sequence, 0 if the content is not an artifact
+     */
+    private       int           artifactDepth;
+
+    private final GlyphList          glyphList;
+    private final boolean            extractText;
+    private final boolean            extractRulings;
+    private final boolean            extractImages;
+    private final boolean            skipArtifacts;
+    private final GlyphPositionIndex shownGlyphs = new GlyphPositionIndex();
+    private final FormXObjectCache   formCache;
+    /**
+     * Content of the forms being interpreted, the innermost form is on top
+     */
+    private final Deque<FormContent> recordedForms = new ArrayDeque<>();
+
+    private int         pageRotation;
+    private PDRectangle pageSize;
+    private Matrix      translateMatrix;
+
+    private double x, y;
+
+    /**
+     * Constructor.
+     *
+     * @param page      page to process
+     * @param glyphList glyph list used to map glyph names to unicode, see {@link #loadGlyphList()}
+     * @param layers    layers to extract, operators needed only for other layers are not interpreted
+     * @param skipArtifacts drop content marked as an artifact
+     * @param formCache cache of form XObject content shared by pages of the document, may be null
+     * @param glyphConsumer consumer of glyphs in the order they are shown
+     */
+    protected PdfContentExtractor(PDPage page, GlyphList glyphList, Set<ExtractionLayer> layers, boolean skipArtifacts,
+                                  FormXObjectCache formCache, GlyphConsumer glyphConsumer) {
+        super(page);
+        this.glyphList = glyphList;
+        this.formCache = formCache;
+        this.glyphConsumer = glyphConsumer;
+        this.extractText = layers.contains(ExtractionLayer.GLYPHS) || layers.contains(ExtractionLayer.WORDS)
+            || layers.contains(ExtractionLayer.STRUCTURE);
+        this.extractRulings = layers.contains(ExtractionLayer.RULINGS);
+        this.extractImages = layers.contains(ExtractionLayer.IMAGES);
+        this.skipArtifacts = skipArtifacts;
+
+        if (!extractRulings) {
+            for (String operator : PATH_CONSTRUCTION_OPERATORS) {
+                addOperator(new SkippedOperator(operator));
+            }
+        }
+        if (!extractImages) {
+            addOperator(new SkippedOperator("BI"));
+            addOperator(new FormOnlyDrawObject());
+        }
+        if (layers.contains(ExtractionLayer.STRUCTURE) || skipArtifacts) {
+            addOperator(new BeginMarkedContent("BMC"));
+            addOperator(new BeginMarkedContent("BDC"));
+            addOperator(new EndMarkedContent());
+        }
+    }
+
+    /**
+     * Loads the Adobe glyph list extended with the additional names known to PDFBox text extraction. Glyph lists
+     * cache name lookups and are not thread safe, so one list should be used by one thread at a time.
+     */
+    static GlyphList loadGlyphList() {
+        String path = "org/apache/pdfbox/resources/glyphlist/additional.txt";
+        try (InputStream input = GlyphList.class.getClassLoader().getResourceAsStream(path)) {
+            return new GlyphList(GlyphList.getAdobeGlyphList(), input);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void run() {
+        try {
+            processPage(getPage());
+            if (lastTextPosition != null) {
+                glyphConsumer.accept(lastTextPosition, lastMarkedContentId);
+                lastTextPosition = null;
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void processPage(PDPage page) throws IOException {
+        pageRotation = page.getRotation();
+        pageSize = page.getCropBox();
+        if (pageSize.getLowerLeftX() == 0 && pageSize.getLowerLeftY() == 0) {
+            translateMatrix = null;
+        } else {
+            translateMatrix = Matrix.getTranslateInstance(-pageSize.getLowerLeftX(), -pageSize.getLowerLeftY());
+        }
+        super.processPage(page);
+    }
+
+    @Override
+    public void showForm(PDFormXObject form) throws IOException {
+        if (formCache == null) {
+            super.showForm(form);
+        } else {
+            showCachedForm(form, () -> super.showForm(form));
+        }
+    }
+
+    @Override
+    public void showTransparencyGroup(PDTransparencyGroup form) throws IOException {
+        if (formCache == null) {
+            super.showTransparencyGroup(form);
+        } else {
+            showCachedForm(form, () -> super.showTransparencyGroup(form));
+        }
+    }
+
+    private void showCachedForm(PDFormXObject form, FormInterpreter interpreter) throws IOException {
+        // forms drawn inside of text objects change the text matrix, so they are not cached
+        if (getTextMatrix() != null) {
+            interpreter.run();
+            return;
+        }
+
+        FormXObjectCache.Key key = getFormKey(form);
+        FormContent content = formCache.get(key);
+        int depth = markedContentDepth;
+        if (content == null || content.startPointUsed && (content.startX != x || content.startY != y)) {
+            content = new FormContent(x, y);
+            recordedForms.push(content);
+            try {
+                interpreter.run();
+            } finally {
+                recordedForms.pop();
+                // marked content sequences should be balanced within a content stream
+                markedContentDepth = Math.min(markedContentDepth, depth);
+                if (artifactDepth > markedContentDepth) {
+                    artifactDepth = 0;
+                }
+            }
+            content.endX = x;
+            content.endY = y;
+            if (getTextMatrix() == null) {
+                formCache.put(key, content);
+            }
+        } else {
+            for (ShownGlyph glyph : content.glyphs) {
+                processTextPosition(glyph.toTextPosition(), glyph.markedContentId);
+            }
+            rulings.addAll(content.rulings);
+            for (Rectangle imageRegion : content.imageRegions) {
+                imageRegions.add(new Rectangle(
+                    imageRegion.getLeft(), imageRegion.getBottom(), imageRegion.getRight(), imageRegion.getTop()
+                ));
+            }
+            if (content.pointMoved) {
+                x = content.endX;
+                y = content.endY;
+            }
+        }
+
+        FormContent parent = recordedForms.peek();
+        if (parent != null) {
+            parent.glyphs.addAll(content.glyphs);
+            parent.rulings.addAll(content.rulings);
+            parent.imageRegions.addAll(content.imageRegions);
+            if (content.startPointUsed) {
+                useCurrentPoint();
+            }
+            if (content.pointMoved) {
+                moveCurrentPoint();
+            }
+        }
+    }
+
+    /**
+     * Key of everything the output of the form depends on: the form itself, resources inherited by the form, the
+     * page geometry, the transformation matrix, the text state and the enclosing marked content. The current point
+     * is checked only for the forms using it, see {@link FormContent#startPointUsed}.
+     */
+    private FormXObjectCache.Key getFormKey(PDFormXObject form) {
+        PDGraphicsState state = getGraphicsState();
+        Matrix ctm = state.getCurrentTransformationMatrix();
+        PDTextState textState = state.getTextState();
+        Object[] objects = {
+            form.getCOSObject(),
+            form.getResources() == null ? getResources() : null,
+            textState.getFont(),
+            textState.getRenderingMode()
+        };
+        float[] values = {
+            pageRotation, pageSize.getLowerLeftX(), pageSize.getLowerLeftY(), pageSize.getUpperRightX(),
+            pageSize.getUpperRightY(),
+            ctm.getScaleX(), ctm.getShearY(), ctm.getShearX(), ctm.getScaleY(), ctm.getTranslateX(),
+            ctm.getTranslateY(),
+            textState.getCharacterSpacing(), textState.getWordSpacing(), textState.getHorizontalScaling(),
+            textState.getLeading(), textState.getFontSize(), textState.getRise(), textState.getKnockoutFlag() ? 1 : 0
+        };
+        int[] markedContent = {getMarkedContentId(), isSkippedArtifact() ? 1 : 0};
+        return new FormXObjectCache.Key(objects, values, markedContent);
+    }
+
+    @Override
+    public void showTextString(byte[] string) throws IOException {
+        // type 3 glyphs are content streams themselves and may contain rulings
+        if (extractText || extractRulings) {
+            super.showTextString(string);
+        }
+    }
+
+    @Override
+    public void showTextStrings(COSArray array) throws IOException {
+        if (extractText || extractRulings) {
+            super.showTextStrings(array);
+        }
+    }
+
+    @Override
+    protected void showGlyph(Matrix textRenderingMatrix, PDFont font, int code, String unicode, Vector displacement)
+        throws IOException {
+        if (extractText && !isSkippedArtifact()) {
+            ShownGlyph glyph = buildGlyph(textRenderingMatrix, font, code, displacement);
+            if (glyph != null) {
+                FormContent form = recordedForms.peek();
+                if (form != null) {
+                    form.glyphs.add(glyph);
+                }
+                processTextPosition(glyph.toTextPosition(), glyph.markedContentId);
+            }
+        }
+        if (extractRulings) {
+            super.showGlyph(textRenderingMatrix, font, code, unicode, displacement);
+        }
+    }
+
+    private ShownGlyph buildGlyph(Matrix textRenderingMatrix, PDFont font, int code, Vector displacement)
+        throws IOException {
+        PDGraphicsState state = getGraphicsState();
+        Matrix ctm = state.getCurrentTransformationMatrix();
+        float fontSize = state.getTextState().getFontSize();
+        float horizontalScaling = state.getTextState().getHorizontalScaling() / 100f;
+        Matrix textMatrix = getTextMatrix();
+
+        BoundingBox bbox = font.getBoundingBox();
+        if (bbox.getLowerLeftY() < Short.MIN_VALUE) {
+            // PDFBOX-2158 and PDFBOX-3130
+            bbox.setLowerLeftY(-(bbox.getLowerLeftY() + 65536));
+        }
+        // 1/2 the bbox is used as the height
+        float glyphHeight = bbox.getHeight() / 2;
+
+        // sometimes the bbox has very high values, but CapHeight is OK
+        PDFontDescriptor fontDescriptor = font.getFontDescriptor();
+        if (fontDescriptor != null) {
+            float capHeight = fontDescriptor.getCapHeight();
+            if (capHeight != 0 && (capHeight < glyphHeight || glyphHeight == 0)) {
+                glyphHeight = capHeight;
+            }
+        }
+
+        float height;
+        if (font instanceof PDType3Font) {
+            height = font.getFontMatrix().transformPoint(0, glyphHeight).y;
+        } else {
+            height = glyphHeight / 1000;
+        }
+
+        float displacementX = displacement.getX();
+        // the displacement of vertical glyphs is not suitable for their width
+        if (font.isVertical()) {
+            displacementX = font.getWidth(code) / 1000;
+            TrueTypeFont ttf = null;
+            if (font instanceof PDTrueTypeFont) {
+                ttf = ((PDTrueTypeFont) font).getTrueTypeFont();
+            } else if (font instanceof PDType0Font) {
+                PDCIDFont cidFont = ((PDType0Font) font).getDescendantFont();
+                if (cidFont instanceof PDCIDFontType2) {
+                    ttf = ((PDCIDFontType2) cidFont).getTrueTypeFont();
+                }
+            }
+            if (ttf != null && ttf.getUnitsPerEm() != 1000) {
+                displacementX *= 1000f / ttf.getUnitsPerEm();
+            }
+        }
+
+        // displacement without character and word spacing
+        float tx = displacementX * fontSize * horizontalScaling;
+        float ty = displacement.getY() * fontSize;
+        Matrix td = Matrix.getTranslateInstance(tx, ty);
+        Matrix nextTextRenderingMatrix = td.multiply(textMatrix).multiply(ctm);
+        float nextX = nextTextRenderingMatrix.getTranslateX();
+        float nextY = nextTextRenderingMatrix.getTranslateY();
+
+        float dxDisplay = nextX - textRenderingMatrix.getTranslateX();
+        float dyDisplay = height * textRenderingMatrix.getScalingFactorY();
+
+        float glyphSpaceToTextSpaceFactor = 1 / 1000f;
+        if (font instanceof PDType3Font) {
+            glyphSpaceToTextSpaceFactor = font.getFontMatrix().getScaleX();
+        }
+
+        float spaceWidthText = 0;
+        try {
+            spaceWidthText = font.getSpaceWidth() * glyphSpaceToTextSpaceFactor;
+        } catch (Throwable ignored) {
+            // PDFBOX-614, the average font width is used below
+        }
+        if (spaceWidthText == 0) {
+            // the average width appears to be higher than necessary so make it smaller
+            spaceWidthText = font.getAverageFontWidth() * glyphSpaceToTextSpaceFactor * .80f;
+        }
+        if (spaceWidthText == 0) {
+            spaceWidthText = 1.0f;
+        }
+        float spaceWidthDisplay = spaceWidthText * textRenderingMatrix.getScalingFactorX();
+
+        String unicode = font.toUnicode(code, glyphList);
+        if (unicode == null) {
+            if (font instanceof PDSimpleFont) {
+                // coerce the character code into unicode as Acrobat does
+                unicode = new String(new char[] {(char) code});
+            } else {
+                // composite font codes without unicode mapping are skipped
+                return null;
+            }
+        }
+
+        Matrix translatedTextRenderingMatrix;
+        if (translateMatrix == null) {
+            translatedTextRenderingMatrix = textRenderingMatrix;
+        } else {
+            translatedTextRenderingMatrix = Matrix.concatenate(translateMatrix, textRenderingMatrix);
+            nextX -= pageSize.getLowerLeftX();
+            nextY -= pageSize.getLowerLeftY();
+        }
+
+        return new ShownGlyph(
+            pageRotation, pageSize.getWidth(), pageSize.getHeight(), translatedTextRenderingMatrix, nextX, nextY,
+            Math.abs(dyDisplay), dxDisplay, Math.abs(spaceWidthDisplay), unicode, code, font, fontSize,
+            (int) (fontSize * textMatrix.getScalingFactorX()), getMarkedContentId()
+        );
+    }
+
+    private void processTextPosition(TextPosition text, int markedContentId) {
+        if (isDuplicate(text)) {
+            return;
+        }
+
+        TextPosition previous = lastTextPosition;
+        if (previous == null) {
+            lastTextPosition = text;
+            lastMarkedContentId = markedContentId;
+        } else if (text.isDiacritic() && previous.contains(text)) {
+            previous.mergeDiacritic(text);
+        } else if (previous.isDiacritic() && text.contains(previous)) {
+            text.mergeDiacritic(previous);
+            lastTextPosition = text;
+            lastMarkedContentId = markedContentId;
+        } else {
+            glyphConsumer.accept(previous, lastMarkedContentId);
+            lastTextPosition = text;
+            lastMarkedContentId = markedContentId;
+        }
+    }
+
+    /**
+     * @return id of the innermost marked content sequence with an id, -1 if there is none
+     */
+    private int getMarkedContentId() {
+        return markedContentDepth == 0 ? -1 : markedContentIds[markedContentDepth - 1];
+    }
+
+    private boolean isSkippedArtifact() {
+        return skipArtifacts && artifactDepth > 0;
+    }
+
+    /**
+     * Checks whether the same glyph was already shown at (almost) the same position. Some generators draw text
+     * several times to make it look bold.
+     */
+    private boolean isDuplicate(TextPosition text) {
+        String textCharacter = text.getUnicode();
+        float tolerance = text.getWidth() / textCharacter.length() / 3.0f;
+        return shownGlyphs.addUnlessDuplicate(textCharacter, text.getX(), text.getY(), tolerance);
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+        addRulings(Arrays.asList(
+            new Ruling(p1, p2),
+            new Ruling(p0, p1),
+            new Ruling(p2, p3),
+            new Ruling(p3, p0)
+        ));
+    }
+
+    private void addRulings(List<Ruling> shownRulings) {
+        if (isSkippedArtifact()) {
+            return;
+        }
+        rulings.addAll(shownRulings);
+        FormContent form = recordedForms.peek();
+        if (form != null) {
+            form.rulings.addAll(shownRulings);
+        }
+    }
+
+    @Override
+    public void drawImage(PDImage pdImage) throws IOException {
+        if (isSkippedArtifact()) {
+            return;
+        }
+        AffineTransform at = getGraphicsState().getCurrentTransformationMatrix().createAffineTransform();
+        at.scale(1, -1);
+        at.translate(0, -1);
+
+        Rectangle2D imageShape = at.createTransformedShape(new Rectangle2D.Double(0, 0, 1, 1)).getBounds2D();
+
+        Rectangle imageRegion = new Rectangle(
+            imageShape.getX(),
+            imageShape.getY(),
+            (imageShape.getX() + imageShape.getWidth()),
+            (imageShape.getY() + imageShape.getHeight())
+        );
+        imageRegions.add(imageRegion);
+        FormContent form = recordedForms.peek();
+        if (form != null) {
+            form.imageRegions.add(new Rectangle(
+                imageRegion.getLeft(), imageRegion.getBottom(), imageRegion.getRight(), imageRegion.getTop()
+            ));
+        }
+    }
+
+    @Override
+    public void moveTo(float x, float y) throws IOException {
+        moveCurrentPoint();
+        this.x = x;
+        this.y = y;
+    }
+
+    @Override
+    public void lineTo(float x, float y) throws IOException {
+        useCurrentPoint();
+        moveCurrentPoint();
+        addRulings(Collections.singletonList(new Ruling(this.x, this.y, x, y)));
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * Marks forms, which have not moved the current point yet, as depending on the point they were drawn from
+     */
+    private void useCurrentPoint() {
+        for (FormContent form : recordedForms) {
+            if (!form.pointMoved) {
+                form.startPointUsed = true;
+            }
+        }
+    }
+
+    private void moveCurrentPoint() {
+        for (FormContent form : recordedForms) {
+            form.pointMoved = true;
+        }
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+    }
+
+    @Override
+    public Point2D getCurrentPoint() throws IOException {
+        return new Point2D.Double(x, y);
+    }
+
+    @Override
+    public void clip(int windingRule) throws IOException {
+    }
+
+    @Override
+    public void closePath() throws IOException {
+    }
+
+    @Override
+    public void endPath() throws IOException {
+    }
+
+    @Override
+    public void strokePath() throws IOException {
+    }
+
+    @Override
+    public void fillPath(int windingRule) throws IOException {
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) throws IOException {
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) throws IOException {
+    }
+
+    /**
+     * Content shown by a form XObject
+     */
+    static class FormContent {
+        private final List<ShownGlyph> glyphs       = new ArrayList<>();
+        private final List<Ruling>     rulings      = new ArrayList<>();
+        private final List<Rectangle>  imageRegions = new ArrayList<>();
+        private final double           startX, startY;
+        private       double           endX, endY;
+        /**
+         * Whether a line was drawn from the current point the form was drawn from
+         */
+        private       boolean          startPointUsed;
+        private       boolean          pointMoved;
+
+        private FormContent(double startX, double startY) {
+            this.startX = startX;
+            this.startY = startY;
+        }
+    }
+
+    /**
+     * Arguments of a {@link TextPosition}. Positions are mutated by merging of diacritics, so a new one is created
+     * every time the glyph is shown.
+     */
+    private static class ShownGlyph {
+        private final int    pageRotation;
+        private final float  pageWidth;
+        private final float  pageHeight;
+        private final Matrix textMatrix;
+        private final float  endX;
+        private final float  endY;
+        private final float  maxHeight;
+        private final float  individualWidth;
+        private final float  spaceWidth;
+        private final String unicode;
+        private final int    code;
+        private final PDFont font;
+        private final float  fontSize;
+        private final int    fontSizeInPt;
+        private final int    markedContentId;
+
+        private ShownGlyph(int pageRotation, float pageWidth, float pageHeight, Matrix textMatrix, float endX,
+                           float endY, float maxHeight, float individualWidth, float spaceWidth, String unicode,
+                           int code, PDFont font, float fontSize, int fontSizeInPt, int markedContentId) {
+            this.pageRotation = pageRotation;
+            this.pageWidth = pageWidth;
+            this.pageHeight = pageHeight;
+            this.textMatrix = textMatrix;
+            this.endX = endX;
+            this.endY = endY;
+            this.maxHeight = maxHeight;
+            this.individualWidth = individualWidth;
+            this.spaceWidth = spaceWidth;
+            this.unicode = unicode;
+            this.code = code;
+            this.font = font;
+            this.fontSize = fontSize;
+            this.fontSizeInPt = fontSizeInPt;
+            this.markedContentId = markedContentId;
+        }
+
+        private TextPosition toTextPosition() {
+            return new TextPosition(
+                pageRotation, pageWidth, pageHeight, textMatrix.clone(), endX, endY, maxHeight, individualWidth,
+                spaceWidth, unicode, new int[] {code}, font, fontSize, fontSizeInPt
+            );
+        }
+    }
+
+    private interface FormInterpreter {
+        void run() throws IOException;
+    }
+
+    /**
+     * Receiver of the glyphs of a page in the order they are shown
+     */
+    interface GlyphConsumer {
+        /**
+         * @param markedContentId id of the innermost marked content sequence with an id containing the glyph, -1 if
+         *                        there is none or marked content is not tracked
+         */
+        void accept(TextPosition glyph, int markedContentId);
+    }
+
+    /**
+     * Opens a marked content sequence and takes its id from the properties given inline or as a named resource. A
+     * sequence tagged as an artifact makes all content within it an artifact
+     */
+    private class BeginMarkedContent extends OperatorProcessor {
+        private final String name;
+
+        private BeginMarkedContent(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void process(Operator operator, List<COSBase> operands) {
+            COSDictionary properties = null;
+            if (operands.size() > 1 && operands.get(1) instanceof COSDictionary) {
+                properties = (COSDictionary) operands.get(1);
+            } else if (operands.size() > 1 && operands.get(1) instanceof COSName && getResources() != null) {
+                PDPropertyList propertyList = getResources().getProperties((COSName) operands.get(1));
+                properties = propertyList == null ? null : propertyList.getCOSObject();
+            }
+
+            int markedContentId = properties == null ? -1 : properties.getInt(COSName.MCID, -1);
+            if (markedContentDepth == markedContentIds.length) {
+                markedContentIds = Arrays.copyOf(markedContentIds, markedContentDepth * 2);
+            }
+            markedContentIds[markedContentDepth] = markedContentId >= 0 ? markedContentId : getMarkedContentId();
+            markedContentDepth++;
+            if (artifactDepth == 0 && !operands.isEmpty() && COSName.ARTIFACT.equals(operands.get(0))) {
+                artifactDepth = markedContentDepth;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    private class EndMarkedContent extends OperatorProcessor {
+        @Override
+        public void process(Operator operator, List<COSBase> operands) {
+            if (markedContentDepth > 0) {
+                if (artifactDepth == markedContentDepth) {
+                    artifactDepth = 0;
+                }
+                markedContentDepth--;
+            }
+        }
+
+        @Override
+        public String getName() {
+            return "EMC";
+        }
+    }
+
+    /**
+     * Ignores operator together with its operands
+     */
+    private static class SkippedOperator extends OperatorProcessor {
+        private final String name;
+
+        private SkippedOperator(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void process(Operator operator, List<COSBase> operands) {
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+    }
+
+    /**
+     * Draws form XObjects, which may contain text and rulings, but does not load images
+     */
+    private static class FormOnlyDrawObject extends OperatorProcessor {
+        private final DrawObject drawObject = new DrawObject();
+
+        @Override
+        public void setContext(PDFStreamEngine context) {
+            super.setContext(context);
+            drawObject.setContext(context);
+        }
+
+        @Override
+        public void process(Operator operator, List<COSBase> operands) throws IOException {
+            if (!operands.isEmpty() && operands.get(0) instanceof COSName
+                && getContext().getResources().isImageXObject((COSName) operands.get(0))) {
+                return;
+            }
+            drawObject.process(operator, operands);
+        }
+
+        @Override
+        public String getName() {
+            return drawObject.getName();
+        }
+    }
+}
@@ -1,169 +1,681 @@
 package ru.icc.cells.tabbypdf.extraction;
 
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.ResourceCache;
 import org.apache.pdfbox.pdmodel.common.PDRectangle;
-import org.apache.pdfbox.text.PDFTextStripper;
-import org.apache.pdfbox.text.TextPosition;
+import org.apache.pdfbox.pdmodel.font.encoding.GlyphList;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristicsRegistry;
 import ru.icc.cells.tabbypdf.entities.Page;
 import ru.icc.cells.tabbypdf.entities.Rectangle;
 import ru.icc.cells.tabbypdf.entities.Ruling;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
 import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.entities.TextChunkColumns;
+import ru.icc.cells.tabbypdf.utils.processing.StringRemover;
 
-import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
-import java.io.Writer;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-import static ru.icc.cells.tabbypdf.utils.PdfUtils.buildFontCharacteristics;
-import static ru.icc.cells.tabbypdf.utils.PdfUtils.hasSpaceBetweenTextPositions;
-import static ru.icc.cells.tabbypdf.utils.PdfUtils.sameLine;
-
-public class PdfDataExtractor extends PDFTextStripper {
+public class PdfDataExtractor {
 
     public static class Factory {
+        private final PdfDataExtractorConfiguration cnf;
+
+        public Factory() {
+            this(null);
+        }
+
+        public Factory(PdfDataExtractorConfiguration cnf) {
+            this.cnf = cnf == null ? new PdfDataExtractorConfiguration() : cnf;
+        }
+
         public PdfDataExtractor getPdfBoxTextExtractor(String file) {
             return getPdfBoxTextExtractor(new File(file));
         }
 
 
         public PdfDataExtractor getPdfBoxTextExtractor(File file) {
+            return getPdfBoxTextExtractor(DocumentSource.of(file));
+        }
+
+        /**
+         * Reads the stream to the end into memory, the stream is not closed
+         */
+        public PdfDataExtractor getPdfBoxTextExtractor(InputStream input) {
             try {
-                return new PdfDataExtractor(file);
+                return getPdfBoxTextExtractor(DocumentSource.of(input));
             } catch (IOException e) {
                 throw new RuntimeException(e);
             }
         }
+
+        public PdfDataExtractor getPdfBoxTextExtractor(byte[] bytes) {
+            return getPdfBoxTextExtractor(DocumentSource.of(bytes));
+        }
+
+        public PdfDataExtractor getPdfBoxTextExtractor(ByteBuffer buffer) {
+            return getPdfBoxTextExtractor(DocumentSource.of(buffer));
+        }
+
+        /**
+         * Reads the document from the source shared by all workers, the source is not closed. Sources, which are
+         * input streams too, should be cast to {@link RandomAccessRead} to be used without copying
+         */
+        public PdfDataExtractor getPdfBoxTextExtractor(RandomAccessRead source) {
+            return getPdfBoxTextExtractor(DocumentSource.of(source));
+        }
+
+        /**
+         * Reads the document from the stream as its bytes arrive, the stream is not closed. Page iterators of the
+         * extractor return pages of a linearized document as soon as their objects have been read, other documents
+         * are read to the end before their first page. The page cache and parallel extraction read the whole
+         * document first.
+         */
+        public PdfDataExtractor getProgressiveTextExtractor(InputStream input) {
+            return getPdfBoxTextExtractor(new StreamingDocumentSource(input));
+        }
+
+        public PdfDataExtractor getPdfBoxTextExtractor(DocumentSource source) {
+            return new PdfDataExtractor(source, cnf);
+        }
     }
 
     /* Координата 0,0 расположена в левом верхнем углу */
 
-    private final File               file;
-    private final List<TextPosition> textPositions = new ArrayList<>();
+    private final DocumentSource                source;
+    private final PdfDataExtractorConfiguration cnf;
+    private final RulingNormalizer              rulingNormalizer;
+    private final StringRemover                 stringRemover;
+    private final PageCache                     pageCache;
 
-    private PdfDataExtractor(File file) throws IOException {
-        this.file = file;
+    private PdfDataExtractor(DocumentSource source, PdfDataExtractorConfiguration cnf) {
+        this.source = source;
+        this.cnf = cnf;
+        this.rulingNormalizer = cnf.normalizeRulings ? new RulingNormalizer(cnf.rulingTolerance) : null;
+        this.stringRemover = cnf.stringsToRemove.isEmpty() ? null : StringRemover.of(cnf.stringsToRemove);
+        this.pageCache = cnf.pageCacheDirectory != null ? new PageCache(cnf.pageCacheDirectory) : null;
     }
 
+    /**
+     * Extracts all pages of the document at once. Prefer {@link #getPageIterator()} or {@link #getPageStream()}
+     * for long documents, which keep only the page being processed in memory.
+     */
     public List<Page> getPageContent() {
         List<Page> pages = new ArrayList<>();
+        try (PageIterator iterator = getPageIterator()) {
+            iterator.forEachRemaining(pages::add);
+        }
+        return pages;
+    }
 
-        try (PDDocument document = PDDocument.load(file)) {
+    /**
+     * Opens the document and returns an iterator extracting one page per {@link Iterator#next()} call. The document
+     * is closed when the last page has been extracted or when the iterator is closed.
+     * <p>
+     * If the page cache is enabled, pages are read from the cache when possible. Otherwise they are written to the
+     * cache as they are extracted, and the cache entry is kept only if all pages have been extracted.
+     */
+    public PageIterator getPageIterator() {
+        FontCharacteristicsRegistry registry = newFontRegistry();
+        if (pageCache == null) {
+            if (source instanceof StreamingDocumentSource) {
+                return new PageIterator(
+                    new StreamingDocumentWorker((StreamingDocumentSource) source, registry, getMemoryUsageSetting())
+                );
+            }
+            return new PageIterator(new DocumentWorker(registry, getMemoryUsageSetting()));
+        }
+        String key = pageCache.getKey(source, cnf);
+        PageCache.Reader reader = pageCache.open(key, registry, cnf.useColumnarStorage);
+        if (reader != null) {
+            return new PageIterator(new CachedPageSource(reader));
+        }
+        DocumentWorker worker = new DocumentWorker(registry, getMemoryUsageSetting());
+        // the document is loaded before the cache file is created, so a document failing to load leaves no file
+        worker.size();
+        return new PageIterator(new CachingPageSource(worker, pageCache.create(key)));
+    }
 
-            for (int pageIndex = 0; pageIndex < document.getNumberOfPages(); ++pageIndex) {
-                textPositions.clear();
-                stripPage(document, pageIndex);
+    private MemoryUsageSetting getMemoryUsageSetting() {
+        if (cnf.maxMainMemoryBytes < 0) {
+            return MemoryUsageSetting.setupMainMemoryOnly();
+        }
+        return MemoryUsageSetting.setupMixed(cnf.maxMainMemoryBytes).setTempDir(cnf.scratchDirectory);
+    }
 
-                List<TextPosition> chunk = new ArrayList<>();
-                List<List<TextPosition>> chunks = new ArrayList<>();
+    /**
+     * Lazily extracted pages in document order. The stream should be closed if it is not consumed completely.
+     */
+    public Stream<Page> getPageStream() {
+        PageIterator iterator = getPageIterator();
+        Spliterator<Page> spliterator = Spliterators.spliterator(
+            iterator, iterator.size(), Spliterator.ORDERED | Spliterator.NONNULL
+        );
+        return StreamSupport.stream(spliterator, false).onClose(iterator::close);
+    }
 
-                TextPosition previous = null;
-                for (TextPosition current : textPositions) {
-                    if (previous == null) {
-                        chunk.add(current);
-                        previous = current;
-                        continue;
-                    }
+    /**
+     * Extracts pages one by one and passes each of them to the consumer.
+     */
+    public void forEachPage(Consumer<Page> consumer) {
+        try (PageIterator iterator = getPageIterator()) {
+            iterator.forEachRemaining(consumer);
+        }
+    }
 
-                    if ((hasSpaceBetweenTextPositions(current, previous) && !current.getUnicode().equals("•"))
-                        || !sameLine(current, previous) || current.getUnicode().equals(" ")
-                    ) {
-                        if (!chunk.isEmpty()) {
-                            chunks.add(chunk);
+    /**
+     * Extracts all pages of the document using the given number of threads.
+     *
+     * @see #getPageContent(ExecutorService, int)
+     */
+    public List<Page> getPageContent(int parallelism) {
+        if (parallelism <= 1) {
+            return getPageContent();
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(parallelism - 1);
+        try {
+            return getPageContent(executor, parallelism);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts all pages of the document in parallel. Every worker loads its own copy of the document, because
+     * PDFBox documents are not thread safe, and takes the next unprocessed page until all pages are extracted.
+     * The calling thread works as one of the workers.
+     *
+     * @param executor    executor running additional workers
+     * @param parallelism overall number of workers including the calling thread
+     * @return pages in document order
+     */
+    public List<Page> getPageContent(ExecutorService executor, int parallelism) {
+        FontCharacteristicsRegistry registry = newFontRegistry();
+        String key = null;
+        if (pageCache != null) {
+            key = pageCache.getKey(source, cnf);
+            PageCache.Reader reader = pageCache.open(key, registry, cnf.useColumnarStorage);
+            if (reader != null) {
+                List<Page> pages = new ArrayList<>();
+                for (int i = 0; i < reader.size(); i++) {
+                    pages.add(reader.read(i));
+                }
+                return pages;
+            }
+        }
+
+        // memory limits are shared by all workers
+        MemoryUsageSetting memoryUsageSetting = getMemoryUsageSetting().getPartitionedCopy(parallelism);
+        try (DocumentWorker mainWorker = new DocumentWorker(registry, memoryUsageSetting)) {
+            int numberOfPages = mainWorker.size();
+            Page[] pages = new Page[numberOfPages];
+            AtomicInteger nextPage = new AtomicInteger();
+
+            List<Future<?>> workers = new ArrayList<>();
+            try {
+                for (int i = 1; i < Math.min(parallelism, numberOfPages); i++) {
+                    workers.add(executor.submit(() -> {
+                        try (DocumentWorker worker = new DocumentWorker(registry, memoryUsageSetting)) {
+                            worker.extractPages(nextPage, pages);
                         }
-                        chunk = new ArrayList<>();
-                    }
+                        return null;
+                    }));
+                }
+                mainWorker.extractPages(nextPage, pages);
+                for (Future<?> worker : workers) {
+                    worker.get();
+                }
+            } finally {
+                // stops the remaining workers if any of them has failed
+                nextPage.set(numberOfPages);
+            }
 
-                    chunk.add(current);
-                    if (current.getUnicode().equals(" ")) {
-                        chunks.add(chunk);
-                        chunk = new ArrayList<>();
+            if (key != null) {
+                PageCache.Writer writer = pageCache.create(key);
+                try {
+                    for (Page page : pages) {
+                        writer.add(page);
                     }
+                } catch (RuntimeException e) {
+                    writer.abort();
+                    throw e;
+                }
+                writer.commit();
+            }
+            return new ArrayList<>(Arrays.asList(pages));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
 
-                    previous = current;
+    private FontCharacteristicsRegistry newFontRegistry() {
+        return cnf.useSharedFontRegistry ? FontCharacteristicsRegistry.shared() : new FontCharacteristicsRegistry();
+    }
+
+    /**
+     * Pages of a document accessed by index
+     */
+    private interface PageSource extends Closeable {
+        int size();
+
+        Page get(int pageIndex);
+    }
+
+    private static class CachedPageSource implements PageSource {
+        private final PageCache.Reader reader;
+
+        private CachedPageSource(PageCache.Reader reader) {
+            this.reader = reader;
+        }
+
+        @Override
+        public int size() {
+            return reader.size();
+        }
+
+        @Override
+        public Page get(int pageIndex) {
+            return reader.read(pageIndex);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Writes pages of another source to the cache. Pages should be requested in document order.
+     */
+    private static class CachingPageSource implements PageSource {
+        private final PageSource       source;
+        private final PageCache.Writer writer;
+        private       boolean          committed;
+
+        private CachingPageSource(PageSource source, PageCache.Writer writer) {
+            this.source = source;
+            this.writer = writer;
+            if (source.size() == 0) {
+                commit();
+            }
+        }
+
+        @Override
+        public int size() {
+            return source.size();
+        }
+
+        @Override
+        public Page get(int pageIndex) {
+            Page page = source.get(pageIndex);
+            writer.add(page);
+            if (pageIndex == source.size() - 1) {
+                commit();
+            }
+            return page;
+        }
+
+        private void commit() {
+            writer.commit();
+            committed = true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                writer.abort();
+            }
+            source.close();
+        }
+    }
+
+    /**
+     * Extracts pages of its own copy of the document. Holds the state, which can not be shared between threads.
+     * <p>
+     * Resources of pages are released after every window of pages and the document is reopened periodically, if it
+     * is configured, so that objects parsed for already extracted pages do not stay in memory.
+     */
+    private class DocumentWorker implements PageSource {
+        private final MemoryUsageSetting            memoryUsageSetting;
+        private final GlyphList                     glyphList;
+        private final FontCharacteristicsCache      fonts;
+        private final WordSegmenter                 wordSegmenter;
+        private final FormXObjectCache              formCache;
+        private final SharedFontCache               sharedFonts;
+        private       SharedFontCache.DocumentFonts documentFonts;
+        private       PDDocument                    document;
+        private       StructureTreeTables           structureTreeTables;
+        private       int                           pagesInWindow;
+        private       int                           pagesSinceReopen;
+
+        private DocumentWorker(FontCharacteristicsRegistry registry, MemoryUsageSetting memoryUsageSetting) {
+            this.memoryUsageSetting = memoryUsageSetting;
+            this.glyphList = PdfContentExtractor.loadGlyphList();
+            this.sharedFonts = cnf.useSharedFontCache ? SharedFontCache.shared() : null;
+            this.fonts = new FontCharacteristicsCache(registry, sharedFonts);
+            this.wordSegmenter = new WordSegmenter(fonts, stringRemover);
+            this.formCache = cnf.formXObjectCacheSize > 0 ? new FormXObjectCache(cnf.formXObjectCacheSize) : null;
+        }
+
+        /**
+         * @return document, which is loaded on first use and after reopening
+         */
+        private PDDocument getDocument() {
+            if (document == null) {
+                try {
+                    document = source.load(memoryUsageSetting);
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                if (sharedFonts != null) {
+                    document.setResourceCache(newResourceCache());
                 }
+            }
+            return document;
+        }
+
+        /**
+         * @return resource cache for the next pages, the fonts of the previous pages are returned to the shared cache
+         */
+        ResourceCache newResourceCache() {
+            releaseFonts();
+            if (sharedFonts == null) {
+                return new DefaultResourceCache();
+            }
+            documentFonts = sharedFonts.newResourceCache();
+            return documentFonts;
+        }
+
+        private void releaseFonts() {
+            if (documentFonts != null) {
+                documentFonts.release();
+                documentFonts = null;
+            }
+        }
+
+        @Override
+        public int size() {
+            return getDocument().getNumberOfPages();
+        }
+
+        @Override
+        public Page get(int pageIndex) {
+            if (cnf.reopenInterval > 0 && pagesSinceReopen == cnf.reopenInterval) {
+                reopen();
+            }
+            Page page = extractPage(pageIndex);
+            pagesSinceReopen++;
+            if (cnf.pageWindowSize > 0 && ++pagesInWindow == cnf.pageWindowSize) {
+                releaseResources();
+            }
+            return page;
+        }
+
+        @Override
+        public void close() throws IOException {
+            releaseFonts();
+            if (document != null) {
+                document.close();
+            }
+        }
+
+        private void extractPages(AtomicInteger nextPage, Page[] pages) {
+            for (int pageIndex = nextPage.getAndIncrement(); pageIndex < pages.length;
+                 pageIndex = nextPage.getAndIncrement()) {
+                pages[pageIndex] = get(pageIndex);
+            }
+        }
 
-                if (!textPositions.isEmpty()) {
-                    TextPosition textPosition = textPositions.get(textPositions.size() - 1);
-                    chunk.add(textPosition);
-                    chunks.add(chunk);
+        void releaseResources() {
+            if (document != null) {
+                document.setResourceCache(newResourceCache());
+            }
+            // cached characteristics and forms refer to fonts loaded by the released cache
+            clearCaches();
+            pagesInWindow = 0;
+        }
+
+        private void reopen() {
+            releaseFonts();
+            if (document != null) {
+                try {
+                    document.close();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
                 }
+                document = null;
+            }
+            structureTreeTables = null;
+            clearCaches();
+            pagesInWindow = 0;
+            pagesSinceReopen = 0;
+        }
+
+        /**
+         * Clears cached characteristics and forms, which refer to fonts of the released pages
+         */
+        void clearCaches() {
+            fonts.clear();
+            if (formCache != null) {
+                formCache.clear();
+            }
+        }
+
+        PDPage getPage(int pageIndex) {
+            return getDocument().getPage(pageIndex);
+        }
+
+        private Page extractPage(int pageIndex) {
+            PDPage pdPage = getPage(pageIndex);
+            PDRectangle mediaBox = pdPage.getMediaBox();
 
-                PDPage pdPage = document.getPage(pageIndex);
-                PDRectangle mediaBox = pdPage.getMediaBox();
-
-                final List<TextChunk> originChunks = textPositions.stream()
-                    .map(tPos -> new TextChunk(
-                        tPos.getUnicode(),
-                        tPos.getX(),
-                        mediaBox.getHeight() - tPos.getY(),
-                        tPos.getX() + tPos.getWidth(),
-                        mediaBox.getHeight() - tPos.getY() + tPos.getHeight(),
-                        buildFontCharacteristics(tPos.getFont(), tPos.getFontSize(), tPos.getWidthOfSpace())
-                    ))
-                    .collect(Collectors.toList());
-
-                List<TextChunk> wordChunks = chunks.stream()
-                    .filter(word -> word.size() > 0)
-                    .map(word -> {
-                        TextPosition first = word.get(0);
-                        TextPosition last = word.get(word.size() - 1);
-
-                        String text = word.stream()
-                            .map(TextPosition::getUnicode)
-                            .collect(Collectors.joining());
-                        double spaceWidth = word.stream()
-                            .mapToDouble(TextPosition::getWidthOfSpace)
-                            .average()
-                            .orElseThrow(() -> new RuntimeException("Space width not found"));
-
-                        return new TextChunk(
-                            text,
-                            first.getX(),
-                            mediaBox.getHeight() - first.getY(),
-                            last.getX() + last.getWidth(),
-                            mediaBox.getHeight() - last.getY() + last.getHeight(),
-                            buildFontCharacteristics(last.getFont(), last.getFontSize(), spaceWidth)
+            boolean extractStructure = cnf.layers.contains(ExtractionLayer.STRUCTURE);
+            boolean extractWords = extractStructure || cnf.layers.contains(ExtractionLayer.WORDS);
+            boolean extractGlyphs = cnf.layers.contains(ExtractionLayer.GLYPHS);
+            float pageHeight = mediaBox.getHeight();
+            TextChunkColumns.Builder glyphs = TextChunkColumns.newBuilder(fonts.getRegistry());
+            if (extractWords) {
+                wordSegmenter.start(pageHeight);
+            }
+
+            PdfContentExtractor contentExtractor = new PdfContentExtractor(
+                pdPage, glyphList, cnf.layers, cnf.skipArtifacts, formCache, (tPos, mcid) -> {
+                    if (extractWords) {
+                        wordSegmenter.accept(tPos, mcid);
+                    }
+                    if (extractGlyphs) {
+                        glyphs.add(
+                            tPos.getUnicode(),
+                            tPos.getX(),
+                            pageHeight - tPos.getY(),
+                            tPos.getX() + tPos.getWidth(),
+                            pageHeight - tPos.getY() + tPos.getHeight(),
+                            fonts.get(tPos.getFont(), tPos.getFontSize(), tPos.getWidthOfSpace())
                         );
-                    })
-                    .collect(Collectors.toList());
+                    }
+                }
+            );
+            contentExtractor.run();
 
-                PdfGraphicsExtractor graphicsExtractor = new PdfGraphicsExtractor(pdPage);
-                graphicsExtractor.run();
-                List<Ruling> rulings = graphicsExtractor.getRulings();
-                List<Rectangle> imageRegions = graphicsExtractor.getImageRegions();
+            List<TextChunk> wordChunks = extractWords ? wordSegmenter.finish() : new ArrayList<>();
+            List<TaggedTable> taggedTables = new ArrayList<>();
+            if (extractStructure) {
+                if (structureTreeTables == null) {
+                    structureTreeTables = StructureTreeTables.of(getDocument());
+                }
+                taggedTables = structureTreeTables.getTables(pdPage, wordChunks, wordSegmenter.getMarkedContentIds());
+            }
+            TextChunkColumns glyphColumns = glyphs.build();
 
-                pages.add(new Page(
-                    mediaBox.getLowerLeftX(), mediaBox.getLowerLeftY(), mediaBox.getUpperRightX(),
-                    mediaBox.getUpperRightY(), pdPage.getRotation(), originChunks, originChunks, wordChunks, rulings,
-                    imageRegions
-                ));
+            // character chunks are created only if they are requested
+            Supplier<List<TextChunk>> characterChunks;
+            if (cnf.useColumnarStorage) {
+                characterChunks = glyphColumns::asList;
+                wordChunks = TextChunkColumns.of(wordChunks, fonts.getRegistry()).asList();
+            } else {
+                characterChunks = () -> new ArrayList<>(glyphColumns.asList());
             }
-        } catch (IOException e) {
-            throw new RuntimeException(e);
-        }
 
-        return pages;
+            List<Ruling> rulings = contentExtractor.getRulings();
+            if (rulingNormalizer != null) {
+                rulings = rulingNormalizer.normalize(rulings);
+            }
+            List<Rectangle> imageRegions = contentExtractor.getImageRegions();
+
+            Page page = new Page(
+                mediaBox.getLowerLeftX(), mediaBox.getLowerLeftY(), mediaBox.getUpperRightX(),
+                mediaBox.getUpperRightY(), pdPage.getRotation(), characterChunks, wordChunks, rulings, imageRegions
+            );
+            page.setTaggedTables(taggedTables);
+            return page;
+        }
     }
 
-    private void stripPage(PDDocument document, int page) {
-        setStartPage(page + 1);
-        setEndPage(page + 1);
+    /**
+     * Extracts pages of a document read from a stream. Pages of a linearized document are extracted from the received
+     * part of the document while it is possible, the whole document is loaded once a page can not be parsed before the
+     * end of the stream. Tagged tables need the whole document, so they are always extracted from the loaded one.
+     */
+    private class StreamingDocumentWorker extends DocumentWorker {
+        private final StreamingDocumentSource stream;
+        private       ResourceCache           receivedResources;
+        private       boolean                 received          = cnf.layers.contains(ExtractionLayer.STRUCTURE);
 
-        Writer dummy = new OutputStreamWriter(new ByteArrayOutputStream());
-        try {
-            writeText(document, dummy);
-        } catch (IOException e) {
-            throw new RuntimeException(e);
+        private StreamingDocumentWorker(StreamingDocumentSource stream, FontCharacteristicsRegistry registry,
+                                        MemoryUsageSetting memoryUsageSetting) {
+            super(registry, memoryUsageSetting);
+            this.stream = stream;
+            this.receivedResources = newResourceCache();
+        }
+
+        @Override
+        public int size() {
+            try {
+                int numberOfPages = stream.getNumberOfPages();
+                return numberOfPages >= 0 ? numberOfPages : super.size();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        PDPage getPage(int pageIndex) {
+            if (!received) {
+                try {
+                    PDPage page = stream.getPage(pageIndex, receivedResources);
+                    if (page != null) {
+                        return page;
+                    }
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+                received = true;
+                stream.release();
+                receivedResources = null;
+                clearCaches();
+            }
+            return super.getPage(pageIndex);
+        }
+
+        @Override
+        void releaseResources() {
+            super.releaseResources();
+            if (receivedResources != null) {
+                receivedResources = newResourceCache();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            stream.release();
+            super.close();
         }
     }
 
-    @Override
-    protected void writeString(String string, List<TextPosition> textPositions) {
-        this.textPositions.addAll(textPositions);
+    /**
+     * Iterator over the pages of an opened document. Pages are extracted on demand, so only the current page is
+     * referenced by the extractor.
+     */
+    public class PageIterator implements Iterator<Page>, Closeable {
+        private final PageSource source;
+        private final int        numberOfPages;
+        private       int        pageIndex;
+        private       boolean    closed;
+
+        private PageIterator(PageSource source) {
+            this.source = source;
+            this.numberOfPages = source.size();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !closed && pageIndex < numberOfPages;
+        }
+
+        @Override
+        public Page next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Page page = source.get(pageIndex++);
+            if (pageIndex == numberOfPages) {
+                close();
+            }
+            return page;
+        }
+
+        /**
+         * @return index of the page that will be returned by the next {@link #next()} call
+         */
+        public int getPageIndex() {
+            return pageIndex;
+        }
+
+        public int size() {
+            return numberOfPages;
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                source.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,93 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import lombok.Setter;
+import lombok.experimental.Accessors;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
+@Setter
+@Accessors(chain = true)
+public class PdfDataExtractorConfiguration {
+    /**
+     * Intern font characteristics of all documents in the process-wide registry instead of a registry per document.
+     * Font names are interned without the tags of embedded subsets, see
+     * {@link ru.icc.cells.tabbypdf.entities.FontCharacteristicsRegistry#shared()}
+     */
+    boolean useSharedFontRegistry = false;
+    /**
+     * Take parsed fonts from the process-wide {@link SharedFontCache}, so that fonts embedded in several documents
+     * are parsed once
+     */
+    boolean useSharedFontCache    = false;
+    /**
+     * Keep text chunks of extracted pages in {@link ru.icc.cells.tabbypdf.entities.TextChunkColumns}. Chunk lists of
+     * such pages are read-only views creating chunks on access
+     */
+    boolean useColumnarStorage    = false;
+    /**
+     * Merge overlapping collinear rulings, snap near axis-aligned ones and drop degenerate ones
+     *
+     * @see RulingNormalizer
+     */
+    boolean normalizeRulings      = true;
+    /**
+     * Distance in points, within which rulings are considered collinear, abutting or degenerate
+     */
+    double  rulingTolerance       = 1;
+    /**
+     * Drop glyphs, rulings and images marked as artifacts, such as running headers, footers, page numbers and
+     * watermarks, while the content stream is interpreted
+     */
+    boolean skipArtifacts         = false;
+    /**
+     * Strings removed from the text of words as glyphs are joined into words, words left empty are dropped. Strings
+     * are removed literally, glyphs keep their text
+     *
+     * @see ru.icc.cells.tabbypdf.utils.processing.StringRemover
+     */
+    List<String> stringsToRemove = new ArrayList<>();
+    /**
+     * Layers of page content to extract. Layers, which are not requested, are left empty in extracted pages
+     */
+    Set<ExtractionLayer> layers = EnumSet.allOf(ExtractionLayer.class);
+    /**
+     * Directory of the binary page cache. Pages of a document are read from the cache if the document with the same
+     * content has already been extracted with the same configuration. The cache is disabled if the directory is null
+     */
+    File pageCacheDirectory = null;
+    /**
+     * Heap memory in bytes for the buffers of a document, the rest is kept in scratch files. Unlimited if negative.
+     * The limit is divided between workers of parallel extraction
+     */
+    long maxMainMemoryBytes = -1;
+    /**
+     * Directory of scratch files, the default temporary directory is used if it is null
+     */
+    File scratchDirectory   = null;
+    /**
+     * Number of pages, after which fonts, images and other cached resources of pages are released. Never released if
+     * not positive
+     */
+    int  pageWindowSize     = 0;
+    /**
+     * Number of pages, after which the document is closed and loaded again to release all parsed objects. Never
+     * reopened if not positive
+     */
+    int  reopenInterval     = 0;
+    /**
+     * Number of form XObject outputs cached per document, so that forms drawn in the same state on several pages are
+     * interpreted once. Forms are always interpreted if not positive
+     */
+    int  formXObjectCacheSize = 256;
+
+    public PdfDataExtractorConfiguration setLayers(ExtractionLayer... layers) {
+        this.layers = EnumSet.noneOf(ExtractionLayer.class);
+        this.layers.addAll(Arrays.asList(layers));
+        return this;
+    }
+}
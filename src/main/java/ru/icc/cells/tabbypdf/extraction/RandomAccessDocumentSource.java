@@ -0,0 +1,43 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.PDFParser;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.function.Supplier;
+
+/**
+ * Document read from a new view of its bytes on every load
+ */
+class RandomAccessDocumentSource implements DocumentSource {
+    private final Supplier<RandomAccessRead> views;
+
+    RandomAccessDocumentSource(Supplier<RandomAccessRead> views) {
+        this.views = views;
+    }
+
+    @Override
+    public PDDocument load(MemoryUsageSetting memoryUsageSetting) throws IOException {
+        // the same way as PDDocument.load(byte[]) does, the view is closed with the document
+        ScratchFile scratchFile = new ScratchFile(memoryUsageSetting);
+        try {
+            PDFParser parser = new PDFParser(views.get(), "", null, null, scratchFile);
+            parser.parse();
+            return parser.getPDDocument();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(scratchFile);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream openStream() {
+        return new RandomAccessInputStream(views.get());
+    }
+}
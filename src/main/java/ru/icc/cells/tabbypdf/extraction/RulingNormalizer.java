@@ -0,0 +1,109 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import ru.icc.cells.tabbypdf.entities.Ruling;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reduces rulings of a page to a minimal equivalent set. Near axis-aligned rulings are snapped to be strictly
+ * horizontal or vertical, rulings lying on the same line within the tolerance are merged when they overlap or abut,
+ * and rulings shorter than the tolerance are dropped. Other rulings are only deduplicated.
+ * <p>
+ * Resulting rulings go from left to right and from bottom to top. Horizontal rulings are ordered by y, then vertical
+ * rulings by x, then the others in the original order.
+ */
+public class RulingNormalizer {
+    private final double tolerance;
+
+    public RulingNormalizer(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    public List<Ruling> normalize(List<Ruling> rulings) {
+        Segment[] horizontal = new Segment[rulings.size()];
+        Segment[] vertical = new Segment[rulings.size()];
+        int horizontalCount = 0;
+        int verticalCount = 0;
+        Set<Ruling> others = new LinkedHashSet<>();
+
+        for (Ruling ruling : rulings) {
+            double x1 = ruling.getStartLocation().getX();
+            double y1 = ruling.getStartLocation().getY();
+            double x2 = ruling.getEndLocation().getX();
+            double y2 = ruling.getEndLocation().getY();
+            double dx = Math.abs(x2 - x1);
+            double dy = Math.abs(y2 - y1);
+
+            if (Math.hypot(dx, dy) < tolerance) {
+                continue;
+            }
+            if (dy <= tolerance) {
+                horizontal[horizontalCount++] = new Segment((y1 + y2) / 2, Math.min(x1, x2), Math.max(x1, x2));
+            } else if (dx <= tolerance) {
+                vertical[verticalCount++] = new Segment((x1 + x2) / 2, Math.min(y1, y2), Math.max(y1, y2));
+            } else {
+                others.add(ruling);
+            }
+        }
+
+        List<Ruling> result = new ArrayList<>();
+        for (Segment segment : merge(horizontal, horizontalCount)) {
+            result.add(new Ruling(segment.start, segment.position, segment.end, segment.position));
+        }
+        for (Segment segment : merge(vertical, verticalCount)) {
+            result.add(new Ruling(segment.position, segment.start, segment.position, segment.end));
+        }
+        result.addAll(others);
+        return result;
+    }
+
+    private List<Segment> merge(Segment[] segments, int count) {
+        Arrays.sort(segments, 0, count, Comparator.comparingDouble((Segment segment) -> segment.position));
+
+        List<Segment> merged = new ArrayList<>();
+        int lineStart = 0;
+        while (lineStart < count) {
+            // segments closer than the tolerance to the first one of a line are snapped to their mean position
+            int lineEnd = lineStart + 1;
+            double positionSum = segments[lineStart].position;
+            while (lineEnd < count && segments[lineEnd].position - segments[lineStart].position <= tolerance) {
+                positionSum += segments[lineEnd].position;
+                lineEnd++;
+            }
+            double position = positionSum / (lineEnd - lineStart);
+
+            Arrays.sort(segments, lineStart, lineEnd, Comparator.comparingDouble((Segment segment) -> segment.start));
+            Segment current = new Segment(position, segments[lineStart].start, segments[lineStart].end);
+            for (int i = lineStart + 1; i < lineEnd; i++) {
+                Segment next = segments[i];
+                if (next.start <= current.end + tolerance) {
+                    current.end = Math.max(current.end, next.end);
+                } else {
+                    merged.add(current);
+                    current = new Segment(position, next.start, next.end);
+                }
+            }
+            merged.add(current);
+
+            lineStart = lineEnd;
+        }
+        return merged;
+    }
+
+    private static class Segment {
+        private final double position;
+        private final double start;
+        private       double end;
+
+        private Segment(double position, double start, double end) {
+            this.position = position;
+            this.start = start;
+            this.end = end;
+        }
+    }
+}
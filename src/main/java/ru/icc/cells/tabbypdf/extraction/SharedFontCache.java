@@ -0,0 +1,328 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSBoolean;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSFloat;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.cos.COSString;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static ru.icc.cells.tabbypdf.utils.PdfUtils.buildFontCharacteristics;
+
+/**
+ * Pool of parsed fonts shared by documents, which embed the same fonts. Fonts are keyed by the hash of their
+ * dictionaries together with the font programs, encodings and ToUnicode maps they refer to, so only identical fonts
+ * of different documents are shared. PDFBox fonts are not thread safe, so a font is lent to one document at a time
+ * and returned to the pool when the resources of the document are released. Idle fonts are evicted in the least
+ * recently used order once the pool holds more of them than its maximum size.
+ * <p>
+ * Type 3 fonts, whose glyphs are content streams of their documents, are never shared. The pool is thread safe.
+ */
+public class SharedFontCache {
+    private static final SharedFontCache SHARED = new SharedFontCache(256);
+
+    private final LinkedHashMap<String, Deque<PDFont>> idle        = new LinkedHashMap<>(16, 0.75f, true);
+    /* keys and descriptors of all fonts of the pool, lent fonts included */
+    private final Map<PDFont, String>                  keys        = new IdentityHashMap<>();
+    private final Map<PDFont, FontCharacteristics>     descriptors = new IdentityHashMap<>();
+    private       int                                  maxSize;
+    private       int                                  idleCount;
+    private       long                                 hits;
+    private       long                                 misses;
+    private       long                                 evictions;
+
+    /**
+     * @param maxSize maximum number of idle fonts
+     */
+    public SharedFontCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @return process-wide pool keeping up to 256 idle fonts
+     */
+    public static SharedFontCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Sets the maximum number of idle fonts and evicts the least recently used fonts exceeding it
+     */
+    public synchronized SharedFontCache setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict();
+        return this;
+    }
+
+    /**
+     * @return number of fonts lent from the pool instead of being parsed
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return number of shareable fonts, which have been parsed because the pool has no idle copy of them
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return number of idle fonts evicted from the pool
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return number of idle fonts
+     */
+    public synchronized int size() {
+        return idleCount;
+    }
+
+    /**
+     * Evicts all idle fonts
+     */
+    public synchronized void clear() {
+        for (Deque<PDFont> fonts : idle.values()) {
+            evictions += fonts.size();
+            forget(fonts);
+        }
+        idle.clear();
+        idleCount = 0;
+    }
+
+    /**
+     * @return new resource cache of a document, which takes its fonts from the pool
+     */
+    DocumentFonts newResourceCache() {
+        return new DocumentFonts();
+    }
+
+    /**
+     * @return characteristics of the font without size and space width, which are kept with the font if it belongs
+     * to the pool
+     */
+    synchronized FontCharacteristics getDescriptor(PDFont font) {
+        FontCharacteristics descriptor = descriptors.get(font);
+        if (descriptor == null) {
+            descriptor = buildFontCharacteristics(font, 0, 0);
+            if (keys.containsKey(font)) {
+                descriptors.put(font, descriptor);
+            }
+        }
+        return descriptor;
+    }
+
+    private synchronized PDFont lend(String key) {
+        Deque<PDFont> fonts = idle.get(key);
+        if (fonts == null) {
+            misses++;
+            return null;
+        }
+        PDFont font = fonts.pop();
+        if (fonts.isEmpty()) {
+            idle.remove(key);
+        }
+        idleCount--;
+        hits++;
+        return font;
+    }
+
+    private synchronized void add(String key, PDFont font) {
+        keys.put(font, key);
+    }
+
+    private synchronized void giveBack(Map<PDFont, String> fonts) {
+        for (Map.Entry<PDFont, String> entry : fonts.entrySet()) {
+            idle.computeIfAbsent(entry.getValue(), key -> new ArrayDeque<>()).push(entry.getKey());
+            idleCount++;
+        }
+        evict();
+    }
+
+    private void evict() {
+        Iterator<Deque<PDFont>> iterator = idle.values().iterator();
+        while (idleCount > maxSize && iterator.hasNext()) {
+            Deque<PDFont> fonts = iterator.next();
+            while (idleCount > maxSize && !fonts.isEmpty()) {
+                forget(Collections.singletonList(fonts.removeLast()));
+                idleCount--;
+                evictions++;
+            }
+            if (fonts.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void forget(Iterable<PDFont> fonts) {
+        for (PDFont font : fonts) {
+            keys.remove(font);
+            descriptors.remove(font);
+        }
+    }
+
+    /**
+     * @return hash of the font dictionary and all objects it refers to or null if the font is not shared
+     */
+    static String getKey(COSDictionary font) {
+        if (COSName.TYPE3.equals(font.getCOSName(COSName.SUBTYPE))) {
+            return null;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            update(digest, font, Collections.newSetFromMap(new IdentityHashMap<>()));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static void update(MessageDigest digest, COSBase base, Set<COSBase> visited) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base instanceof COSDictionary || base instanceof COSArray) {
+            if (!visited.add(base)) {
+                digest.update((byte) 'R');
+                return;
+            }
+        }
+        if (base instanceof COSDictionary) {
+            COSDictionary dictionary = (COSDictionary) base;
+            digest.update((byte) (base instanceof COSStream ? 'S' : 'D'));
+            List<COSName> names = new ArrayList<>(dictionary.keySet());
+            Collections.sort(names);
+            update(digest, names.size());
+            for (COSName name : names) {
+                update(digest, name.getName().getBytes(StandardCharsets.UTF_8));
+                update(digest, dictionary.getItem(name), visited);
+            }
+            if (base instanceof COSStream) {
+                // the same program compressed in a different way is parsed once more
+                byte[] buffer = new byte[8192];
+                try (InputStream input = ((COSStream) base).createRawInputStream()) {
+                    for (int read = input.read(buffer); read >= 0; read = input.read(buffer)) {
+                        digest.update(buffer, 0, read);
+                    }
+                }
+            }
+        } else if (base instanceof COSArray) {
+            COSArray array = (COSArray) base;
+            digest.update((byte) 'A');
+            update(digest, array.size());
+            for (int i = 0; i < array.size(); i++) {
+                update(digest, array.get(i), visited);
+            }
+        } else if (base instanceof COSName) {
+            digest.update((byte) 'N');
+            update(digest, ((COSName) base).getName().getBytes(StandardCharsets.UTF_8));
+        } else if (base instanceof COSString) {
+            digest.update((byte) 'T');
+            update(digest, ((COSString) base).getBytes());
+        } else if (base instanceof COSInteger) {
+            digest.update((byte) 'I');
+            digest.update(ByteBuffer.allocate(8).putLong(((COSInteger) base).longValue()).array());
+        } else if (base instanceof COSFloat) {
+            digest.update((byte) 'F');
+            update(digest, Float.floatToIntBits(((COSFloat) base).floatValue()));
+        } else if (base instanceof COSBoolean) {
+            digest.update((byte) 'B');
+            digest.update((byte) (((COSBoolean) base).getValue() ? 1 : 0));
+        } else {
+            digest.update((byte) 'Z');
+        }
+    }
+
+    private static void update(MessageDigest digest, byte[] bytes) {
+        update(digest, bytes.length);
+        digest.update(bytes);
+    }
+
+    private static void update(MessageDigest digest, int value) {
+        digest.update(ByteBuffer.allocate(4).putInt(value).array());
+    }
+
+    /**
+     * Resource cache of a document, which borrows fonts from the pool and adds the fonts parsed by the document to
+     * it. Fonts are returned to the pool by {@link #release()}, after that the cache should not be used.
+     */
+    class DocumentFonts extends DefaultResourceCache {
+        private final Map<COSObject, String> parsed = new HashMap<>();
+        private final Map<PDFont, String>    lent   = new IdentityHashMap<>();
+
+        private DocumentFonts() {
+        }
+
+        @Override
+        public PDFont getFont(COSObject indirect) throws IOException {
+            PDFont font = super.getFont(indirect);
+            if (font != null || !(indirect.getObject() instanceof COSDictionary)) {
+                return font;
+            }
+            String key = getKey((COSDictionary) indirect.getObject());
+            if (key == null) {
+                return null;
+            }
+            font = lend(key);
+            if (font == null) {
+                // the font is parsed by the document and put into this cache
+                parsed.put(indirect, key);
+                return null;
+            }
+            super.put(indirect, font);
+            lent.put(font, key);
+            return font;
+        }
+
+        @Override
+        public void put(COSObject indirect, PDFont font) throws IOException {
+            super.put(indirect, font);
+            String key = parsed.remove(indirect);
+            if (key != null) {
+                add(key, font);
+                lent.put(font, key);
+            }
+        }
+
+        /**
+         * Returns all fonts of the document to the pool
+         */
+        void release() {
+            giveBack(lent);
+            lent.clear();
+            parsed.clear();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.RandomAccessRead;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+/**
+ * View of a source shared with other views. Every view keeps its own position and seeks the source before each read,
+ * reads of all views are synchronized on the source. Closing the view does not close the source
+ */
+class SharedRandomAccessRead implements RandomAccessRead {
+    private final RandomAccessRead source;
+    private       long             position;
+    private       boolean          closed;
+
+    SharedRandomAccessRead(RandomAccessRead source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read() throws IOException {
+        synchronized (source) {
+            source.seek(position);
+            int b = source.read();
+            if (b >= 0) {
+                position++;
+            }
+            return b;
+        }
+    }
+
+    @Override
+    public int read(byte[] b) throws IOException {
+        return read(b, 0, b.length);
+    }
+
+    @Override
+    public int read(byte[] b, int offset, int length) throws IOException {
+        synchronized (source) {
+            source.seek(position);
+            int read = source.read(b, offset, length);
+            if (read > 0) {
+                position += read;
+            }
+            return read;
+        }
+    }
+
+    @Override
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public void seek(long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("Invalid position " + position);
+        }
+        this.position = position;
+    }
+
+    @Override
+    public long length() throws IOException {
+        synchronized (source) {
+            return source.length();
+        }
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed || source.isClosed();
+    }
+
+    @Override
+    public int peek() throws IOException {
+        synchronized (source) {
+            source.seek(position);
+            return source.peek();
+        }
+    }
+
+    @Override
+    public void rewind(int bytes) throws IOException {
+        seek(position - bytes);
+    }
+
+    @Override
+    public byte[] readFully(int length) throws IOException {
+        byte[] b = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            int read = read(b, offset, length - offset);
+            if (read <= 0) {
+                throw new EOFException("Premature end of source");
+            }
+            offset += read;
+        }
+        return b;
+    }
+
+    @Override
+    public boolean isEOF() throws IOException {
+        return position >= length();
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Math.max(length() - position, 0), Integer.MAX_VALUE);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,633 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSDocument;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSNumber;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.cos.COSObjectKey;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.io.IOUtils;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.apache.pdfbox.io.ScratchFile;
+import org.apache.pdfbox.pdfparser.COSParser;
+import org.apache.pdfbox.pdfparser.XrefTrailerResolver;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageTree;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Document read from a stream, which can not be sought, as its bytes arrive. The stream is read only as far as it is
+ * needed, the document is loaded once the stream has been read to the end.
+ * <p>
+ * Pages of a linearized document can be parsed before that from the received part of the document: the first page
+ * once its section has arrived, other pages once their sections, located by the page offset hint table, and the
+ * objects they share with other pages have arrived. Objects are found by their headers, so pages referring to objects
+ * in object streams wait for the end of the stream. Like viewers do, the received part is trusted to be the final
+ * version of the document, which is not the case for documents updated after their linearization.
+ */
+class StreamingDocumentSource implements DocumentSource {
+    private static final int      CHUNK_SIZE          = 64 * 1024;
+    private static final int      LINEARIZATION_RANGE = 1024;
+    private static final int      MAX_HEADER_LENGTH   = 32;
+    private static final COSName  LINEARIZED          = COSName.getPDFName("Linearized");
+    private static final COSName  HINTS               = COSName.getPDFName("H");
+    private static final byte[]   ENCRYPT             = "/Encrypt".getBytes(StandardCharsets.ISO_8859_1);
+    private static final COSName[] INHERITABLE        = {
+        COSName.RESOURCES, COSName.MEDIA_BOX, COSName.CROP_BOX, COSName.ROTATE
+    };
+
+    private final InputStream                  input;
+    private       byte[]                       bytes   = new byte[CHUNK_SIZE];
+    private       int                          length;
+    private       boolean                      complete;
+    private       DocumentSource               completeSource;
+
+    /* headers "number generation obj" found at line starts by their offsets */
+    private final TreeMap<Long, COSObjectKey>  headers = new TreeMap<>();
+    /* offsets of objects followed by another header, so that they have arrived completely */
+    private final Map<COSObjectKey, Long>      offsets = new HashMap<>();
+    private       int                          scanPosition;
+
+    /* null until the beginning of the document has arrived */
+    private       Boolean                      linearized;
+    private       int                          numberOfPages;
+    private       int                          firstPageObject;
+    private       long[]                       hintStreams;
+    private       long[]                       pageOffsets;
+    private       boolean                      pageOffsetsRead;
+    private       PrefixParser                 parser;
+
+    StreamingDocumentSource(InputStream input) {
+        this.input = input;
+    }
+
+    @Override
+    public synchronized PDDocument load(MemoryUsageSetting memoryUsageSetting) throws IOException {
+        return getCompleteSource().load(memoryUsageSetting);
+    }
+
+    @Override
+    public synchronized InputStream openStream() throws IOException {
+        return getCompleteSource().openStream();
+    }
+
+    private DocumentSource getCompleteSource() throws IOException {
+        if (completeSource == null) {
+            while (!complete) {
+                read();
+            }
+            release();
+            completeSource = DocumentSource.of(ByteBuffer.wrap(bytes, 0, length));
+        }
+        return completeSource;
+    }
+
+    /**
+     * @return number of pages given by the linearization dictionary or -1 if the document is not linearized
+     */
+    synchronized int getNumberOfPages() throws IOException {
+        return isLinearized() ? numberOfPages : -1;
+    }
+
+    /**
+     * Reads the stream until all objects of the page have arrived and parses the page from the received part of the
+     * document. Inheritable attributes, which are not given by the page itself, are taken from its ancestors. Other
+     * references to the page tree, annotations and article beads of the page are not resolved.
+     *
+     * @return page or null if the page can not be parsed before the end of the stream, so the document should be
+     * loaded
+     */
+    synchronized PDPage getPage(int pageIndex, ResourceCache resourceCache) throws IOException {
+        if (!isLinearized() || completeSource != null) {
+            return null;
+        }
+        while (!complete) {
+            try {
+                COSDictionary page = resolvePage(pageIndex);
+                return page == null ? null : newPage(page, resourceCache);
+            } catch (ObjectNotReceivedException e) {
+                read();
+            } catch (IOException e) {
+                // the received part is not what it has been taken for
+                release();
+                linearized = false;
+                return null;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return page using the resource cache the same way as pages of a loaded document do
+     */
+    private static PDPage newPage(COSDictionary page, ResourceCache resourceCache) {
+        PDPage pdPage = new PDPage(page);
+        COSBase resources = PDPageTree.getInheritableAttribute(page, COSName.RESOURCES);
+        if (resources instanceof COSDictionary) {
+            pdPage.setResources(new PDResources((COSDictionary) resources, resourceCache));
+        }
+        return pdPage;
+    }
+
+    /**
+     * Releases objects parsed from the received part of the document
+     */
+    synchronized void release() {
+        if (parser != null) {
+            parser.close();
+            parser = null;
+        }
+    }
+
+    private COSDictionary resolvePage(int pageIndex) throws IOException {
+        COSObjectKey key = getPageKey(pageIndex);
+        if (key == null) {
+            return null;
+        }
+        COSBase base = parser.parseObject(key);
+        if (!(base instanceof COSDictionary) || !COSName.PAGE.equals(((COSDictionary) base).getCOSName(COSName.TYPE))) {
+            return null;
+        }
+        COSDictionary page = (COSDictionary) base;
+        Set<COSBase> resolved = Collections.newSetFromMap(new IdentityHashMap<>());
+        resolve(page, resolved, COSName.PARENT, COSName.ANNOTS, COSName.B);
+
+        COSDictionary node = page;
+        for (COSName attribute : INHERITABLE) {
+            while (node.getItem(attribute) == null && node.getItem(COSName.PARENT) instanceof COSObject) {
+                COSObject parent = (COSObject) node.getItem(COSName.PARENT);
+                if (parent.getObject() == null) {
+                    parser.parseObject(new COSObjectKey(parent));
+                }
+                if (!(parent.getObject() instanceof COSDictionary)) {
+                    break;
+                }
+                node = (COSDictionary) parent.getObject();
+            }
+            resolve(node.getItem(attribute), resolved);
+            node = page;
+        }
+        return page;
+    }
+
+    /**
+     * Parses all objects referred to by the object except the given entries of the object itself
+     */
+    private void resolve(COSBase object, Set<COSBase> resolved, COSName... skippedEntries) throws IOException {
+        Deque<COSBase> queue = new ArrayDeque<>();
+        if (object instanceof COSDictionary && skippedEntries.length > 0) {
+            COSDictionary dictionary = (COSDictionary) object;
+            resolved.add(dictionary);
+            for (COSName name : dictionary.keySet()) {
+                if (!Arrays.asList(skippedEntries).contains(name)) {
+                    queue.add(dictionary.getItem(name));
+                }
+            }
+        } else if (object != null) {
+            queue.add(object);
+        }
+        while (!queue.isEmpty()) {
+            COSBase base = queue.poll();
+            if (base == null || !resolved.add(base)) {
+                continue;
+            }
+            if (base instanceof COSObject) {
+                COSObject reference = (COSObject) base;
+                if (reference.getObject() == null) {
+                    parser.parseObject(new COSObjectKey(reference));
+                }
+                if (reference.getObject() != null) {
+                    queue.add(reference.getObject());
+                }
+            } else if (base instanceof COSDictionary) {
+                queue.addAll(((COSDictionary) base).getValues());
+            } else if (base instanceof COSArray) {
+                for (COSBase item : (COSArray) base) {
+                    queue.add(item);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return key of the page object or null if it can not be located before the end of the stream
+     */
+    private COSObjectKey getPageKey(int pageIndex) throws IOException {
+        if (pageIndex == 0) {
+            for (COSObjectKey key : offsets.keySet()) {
+                if (key.getNumber() == firstPageObject) {
+                    return key;
+                }
+            }
+            throw new ObjectNotReceivedException(firstPageObject);
+        }
+        if (!pageOffsetsRead) {
+            pageOffsets = readPageOffsets();
+            pageOffsetsRead = true;
+        }
+        if (pageOffsets == null || pageIndex >= pageOffsets.length) {
+            return null;
+        }
+        long offset = pageOffsets[pageIndex];
+        if (offset + MAX_HEADER_LENGTH > scanPosition) {
+            throw new ObjectNotReceivedException(-1);
+        }
+        return headers.get(offset);
+    }
+
+    /**
+     * Reads offsets of the pages from the page offset hint table, which begins the primary hint stream: the header of
+     * 13 items is followed by the numbers of objects of all pages and the lengths of all pages, each of the items
+     * given as a difference from its least value and aligned to a byte boundary.
+     *
+     * @return offsets of the pages or null if there is no valid hint table
+     */
+    private long[] readPageOffsets() throws IOException {
+        COSObjectKey key = headers.get(hintStreams[0]);
+        if (key == null) {
+            return null;
+        }
+        COSBase base = parser.parseObject(key);
+        if (!(base instanceof COSStream)) {
+            return null;
+        }
+        byte[] hints;
+        try (InputStream stream = ((COSStream) base).createInputStream()) {
+            hints = IOUtils.toByteArray(stream);
+        }
+        try {
+            BitReader reader = new BitReader(hints);
+            reader.read(32);
+            long firstPageOffset = reader.read(32);
+            int objectCountBits = (int) reader.read(16);
+            long leastPageLength = reader.read(32);
+            int pageLengthBits = (int) reader.read(16);
+            if (objectCountBits > 32 || pageLengthBits > 32) {
+                return null;
+            }
+            reader.read(32 + 16 + 32 + 16 + 16 + 16 + 16 + 16);
+            for (int i = 0; i < numberOfPages; i++) {
+                reader.read(objectCountBits);
+            }
+            reader.align();
+
+            long[] offsets = new long[numberOfPages];
+            long offset = firstPageOffset;
+            for (int i = 0; i < numberOfPages; i++) {
+                offsets[i] = offset;
+                // offsets are given as if there were no hint streams
+                for (int j = 0; j + 1 < hintStreams.length; j += 2) {
+                    if (offset >= hintStreams[j]) {
+                        offsets[i] += hintStreams[j + 1];
+                    }
+                }
+                offset += leastPageLength + reader.read(pageLengthBits);
+            }
+            return offsets;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private boolean isLinearized() throws IOException {
+        while (linearized == null) {
+            Map.Entry<Long, COSObjectKey> first = headers.firstEntry();
+            if (first != null && first.getKey() >= LINEARIZATION_RANGE
+                || first == null && (scanPosition >= LINEARIZATION_RANGE || complete)) {
+                linearized = false;
+            } else if (first != null && offsets.containsKey(first.getValue())) {
+                linearized = readLinearizationDictionary(first.getValue());
+                if (!linearized) {
+                    release();
+                }
+            } else {
+                read();
+            }
+        }
+        return linearized;
+    }
+
+    /**
+     * Reads the values of the linearization dictionary, which should be the first object of the document. Encrypted
+     * documents and documents, whose first page is not the page 0, are not treated as linearized.
+     */
+    private boolean readLinearizationDictionary(COSObjectKey key) throws IOException {
+        parser = new PrefixParser(new ReceivedBytes(), offsets);
+        COSBase base;
+        try {
+            base = parser.parseObject(key);
+        } catch (IOException e) {
+            return false;
+        }
+        if (!(base instanceof COSDictionary) || !((COSDictionary) base).containsKey(LINEARIZED)) {
+            return false;
+        }
+        COSDictionary dictionary = (COSDictionary) base;
+        numberOfPages = dictionary.getInt(COSName.N);
+        firstPageObject = dictionary.getInt(COSName.O);
+        if (numberOfPages <= 0 || firstPageObject <= 0 || dictionary.getInt(COSName.P, 0) != 0
+            || !(dictionary.getDictionaryObject(HINTS) instanceof COSArray)) {
+            return false;
+        }
+        COSArray hints = (COSArray) dictionary.getDictionaryObject(HINTS);
+        if (hints.size() != 2 && hints.size() != 4) {
+            return false;
+        }
+        hintStreams = new long[hints.size()];
+        for (int i = 0; i < hints.size(); i++) {
+            if (!(hints.getObject(i) instanceof COSNumber)) {
+                return false;
+            }
+            hintStreams[i] = ((COSNumber) hints.getObject(i)).longValue();
+        }
+
+        // the trailer and the document level objects precede the primary hint stream
+        while (!complete && length < hintStreams[0]) {
+            read();
+        }
+        return indexOf(ENCRYPT, (int) Math.min(length, hintStreams[0])) < 0;
+    }
+
+    private int indexOf(byte[] pattern, int end) {
+        for (int i = 0; i + pattern.length <= end; i++) {
+            int j = 0;
+            while (j < pattern.length && bytes[i + j] == pattern[j]) {
+                j++;
+            }
+            if (j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Reads the next chunk of the stream and finds headers of objects in it
+     */
+    private void read() throws IOException {
+        if (complete) {
+            return;
+        }
+        if (length == bytes.length) {
+            if (bytes.length > Integer.MAX_VALUE / 2) {
+                throw new IOException("Document is too large to be read from a stream");
+            }
+            bytes = Arrays.copyOf(bytes, bytes.length * 2);
+        }
+        int read = input.read(bytes, length, Math.min(CHUNK_SIZE, bytes.length - length));
+        if (read < 0) {
+            complete = true;
+        } else {
+            length += read;
+        }
+        scanHeaders();
+    }
+
+    private void scanHeaders() {
+        // a header at the end of the received part may be incomplete
+        int end = complete ? length : length - MAX_HEADER_LENGTH;
+        for (; scanPosition < end; scanPosition++) {
+            if (scanPosition > 0 && bytes[scanPosition - 1] != '\n' && bytes[scanPosition - 1] != '\r') {
+                continue;
+            }
+            COSObjectKey key = parseHeader(scanPosition);
+            if (key != null) {
+                addHeader(scanPosition, key);
+            }
+        }
+        if (complete && !headers.isEmpty()) {
+            Map.Entry<Long, COSObjectKey> last = headers.lastEntry();
+            offsets.putIfAbsent(last.getValue(), last.getKey());
+        }
+    }
+
+    private void addHeader(long offset, COSObjectKey key) {
+        Map.Entry<Long, COSObjectKey> previous = headers.lastEntry();
+        headers.put(offset, key);
+        if (previous != null) {
+            offsets.putIfAbsent(previous.getValue(), previous.getKey());
+        }
+    }
+
+    /**
+     * @return key of the header "number generation obj" at the position or null if there is no header
+     */
+    private COSObjectKey parseHeader(int position) {
+        int p = position;
+        long number = 0;
+        int digits = 0;
+        for (; p < length && isDigit(bytes[p]) && digits < 10; p++, digits++) {
+            number = number * 10 + bytes[p] - '0';
+        }
+        if (digits == 0 || p == length || bytes[p] != ' ') {
+            return null;
+        }
+        while (p < length && bytes[p] == ' ') {
+            p++;
+        }
+        int generation = 0;
+        digits = 0;
+        for (; p < length && isDigit(bytes[p]) && digits < 5; p++, digits++) {
+            generation = generation * 10 + bytes[p] - '0';
+        }
+        if (digits == 0) {
+            return null;
+        }
+        while (p < length && bytes[p] == ' ') {
+            p++;
+        }
+        if (p + 3 > length || bytes[p] != 'o' || bytes[p + 1] != 'b' || bytes[p + 2] != 'j'
+            || p + 3 < length && Character.isLetterOrDigit(bytes[p + 3])) {
+            return null;
+        }
+        return new COSObjectKey(number, generation);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    /**
+     * Parses objects of the received part of the document by the offsets of their headers
+     */
+    private static class PrefixParser extends COSParser {
+        private final Map<COSObjectKey, Long> offsets;
+
+        private PrefixParser(RandomAccessRead source, Map<COSObjectKey, Long> offsets) {
+            super(source);
+            this.offsets = offsets;
+            this.document = new COSDocument(ScratchFile.getMainMemoryOnlyInstance());
+            setLenient(false);
+            xrefTrailerResolver.nextXrefObj(0, XrefTrailerResolver.XRefType.TABLE);
+            xrefTrailerResolver.setStartxref(0);
+        }
+
+        private COSBase parseObject(COSObjectKey key) throws IOException {
+            return parseObjectDynamically(key.getNumber(), key.getGeneration(), true);
+        }
+
+        @Override
+        protected COSBase parseObjectDynamically(long objNr, int objGenNr, boolean requireExistingNotCompressedObj)
+            throws IOException {
+            COSObjectKey key = new COSObjectKey(objNr, objGenNr);
+            Long offset = offsets.get(key);
+            if (offset == null) {
+                throw new ObjectNotReceivedException(objNr);
+            }
+            fileLen = source.length();
+            xrefTrailerResolver.getXrefTable().put(key, offset);
+            return super.parseObjectDynamically(objNr, objGenNr, requireExistingNotCompressedObj);
+        }
+
+        private void close() {
+            IOUtils.closeQuietly(document);
+        }
+    }
+
+    private static class ObjectNotReceivedException extends IOException {
+        private static final long serialVersionUID = 6021581419652437907L;
+
+        private ObjectNotReceivedException(long objectNumber) {
+            super("Object " + objectNumber + " has not been received yet");
+        }
+    }
+
+    /**
+     * Reads bits of a hint table starting with the most significant bit of every byte
+     */
+    private static class BitReader {
+        private final byte[] bytes;
+        private       long   position;
+
+        private BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        private long read(int bits) throws EOFException {
+            long value = 0;
+            for (int i = 0; i < bits; i++, position++) {
+                if (position >> 3 >= bytes.length) {
+                    throw new EOFException("Unexpected end of hint table");
+                }
+                int bit = bytes[(int) (position >> 3)] >> (7 - (int) (position & 7)) & 1;
+                value = value << 1 | bit;
+            }
+            return value;
+        }
+
+        private void align() {
+            position = (position + 7) & ~7L;
+        }
+    }
+
+    /**
+     * Received part of the document, which grows as the stream is read
+     */
+    private class ReceivedBytes implements RandomAccessRead {
+        private int     position;
+        private boolean closed;
+
+        @Override
+        public int read() {
+            return position < length ? bytes[position++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b) {
+            return read(b, 0, b.length);
+        }
+
+        @Override
+        public int read(byte[] b, int offset, int count) {
+            if (count == 0) {
+                return 0;
+            }
+            if (position >= length) {
+                return -1;
+            }
+            int read = Math.min(count, length - position);
+            System.arraycopy(bytes, position, b, offset, read);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public void seek(long position) throws IOException {
+            if (position < 0) {
+                throw new IOException("Invalid position " + position);
+            }
+            this.position = (int) Math.min(position, length);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public boolean isClosed() {
+            return closed;
+        }
+
+        @Override
+        public int peek() {
+            return position < length ? bytes[position] & 0xff : -1;
+        }
+
+        @Override
+        public void rewind(int count) throws IOException {
+            seek(position - count);
+        }
+
+        @Override
+        public byte[] readFully(int count) throws IOException {
+            if (length - position < count) {
+                throw new EOFException("Premature end of received bytes");
+            }
+            byte[] b = Arrays.copyOfRange(bytes, position, position + count);
+            position += count;
+            return b;
+        }
+
+        @Override
+        public boolean isEOF() {
+            return position >= length;
+        }
+
+        @Override
+        public int available() {
+            return length - position;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
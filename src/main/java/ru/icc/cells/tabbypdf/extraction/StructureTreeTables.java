@@ -0,0 +1,343 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDMarkedContentReference;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureElement;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureNode;
+import org.apache.pdfbox.pdmodel.documentinterchange.logicalstructure.PDStructureTreeRoot;
+import org.apache.pdfbox.pdmodel.documentinterchange.taggedpdf.PDTableAttributeObject;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tables of the structure tree of a tagged document indexed by page. The tree is walked once, cells are placed on
+ * the grid of their table according to their spans, and marked content ids of every cell are collected per page.
+ * <p>
+ * Tables nested in cells are treated as the content of these cells. Marked content of form XObjects with their own
+ * structure parents is not distinguished from the marked content of pages.
+ * <p>
+ * Every element is visited once, so kids referring back to their ancestors do not make the walk endless.
+ */
+class StructureTreeTables {
+    private static final int MAX_ROLE_MAPPING_DEPTH = 8;
+
+    private final Map<String, Object>                  roleMap;
+    private final Map<COSDictionary, List<PageTable>> tablesByPage = new IdentityHashMap<>();
+    private final Set<COSDictionary>                  visited      = newIdentitySet();
+
+    private StructureTreeTables(Map<String, Object> roleMap) {
+        this.roleMap = roleMap;
+    }
+
+    static StructureTreeTables of(PDDocument document) {
+        PDStructureTreeRoot root = document.getDocumentCatalog().getStructureTreeRoot();
+        if (root == null) {
+            return new StructureTreeTables(Collections.emptyMap());
+        }
+        StructureTreeTables tables = new StructureTreeTables(root.getRoleMap());
+        for (Object kid : root.getKids()) {
+            tables.walk(kid, null);
+        }
+        return tables;
+    }
+
+    /**
+     * Builds the tables lying on the page from the given words
+     *
+     * @param words            words of the page
+     * @param markedContentIds marked content ids of the words
+     */
+    List<TaggedTable> getTables(PDPage page, List<TextChunk> words, int[] markedContentIds) {
+        List<PageTable> pageTables = tablesByPage.get(page.getCOSObject());
+        if (pageTables == null) {
+            return new ArrayList<>();
+        }
+
+        Map<Integer, List<Integer>> wordsById = new HashMap<>();
+        for (int i = 0; i < words.size(); i++) {
+            if (markedContentIds[i] >= 0) {
+                wordsById.computeIfAbsent(markedContentIds[i], id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        List<TaggedTable> tables = new ArrayList<>();
+        for (PageTable pageTable : pageTables) {
+            List<TaggedCell> cells = new ArrayList<>();
+            boolean empty = true;
+            for (PageCell cell : pageTable.cells) {
+                List<Integer> wordIndices = new ArrayList<>();
+                for (int id : cell.markedContentIds) {
+                    wordIndices.addAll(wordsById.getOrDefault(id, Collections.emptyList()));
+                }
+                Collections.sort(wordIndices);
+                List<TextChunk> chunks = new ArrayList<>();
+                for (int wordIndex : wordIndices) {
+                    chunks.add(words.get(wordIndex));
+                }
+                empty &= chunks.isEmpty();
+                cells.add(new TaggedCell(cell.row, cell.column, cell.rowSpan, cell.columnSpan, cell.header, chunks));
+            }
+            if (!empty) {
+                tables.add(new TaggedTable(pageTable.rowCount, pageTable.columnCount, cells));
+            }
+        }
+        return tables;
+    }
+
+    private void walk(Object node, COSDictionary page) {
+        if (!(node instanceof PDStructureElement)) {
+            return;
+        }
+        PDStructureElement element = (PDStructureElement) node;
+        if (!visited.add(element.getCOSObject())) {
+            return;
+        }
+        page = getPage(element.getCOSObject(), page);
+        if ("Table".equals(getType(element))) {
+            addTable(element, page);
+            return;
+        }
+        for (Object kid : element.getKids()) {
+            walk(kid, page);
+        }
+    }
+
+    private void addTable(PDStructureElement table, COSDictionary page) {
+        List<PDStructureElement> rows = new ArrayList<>();
+        List<COSDictionary> rowPages = new ArrayList<>();
+        for (Object kid : table.getKids()) {
+            if (!(kid instanceof PDStructureElement)) {
+                continue;
+            }
+            PDStructureElement element = (PDStructureElement) kid;
+            String type = getType(element);
+            if ("TR".equals(type)) {
+                rows.add(element);
+                rowPages.add(page);
+            } else if ("THead".equals(type) || "TBody".equals(type) || "TFoot".equals(type)) {
+                COSDictionary groupPage = getPage(element.getCOSObject(), page);
+                for (Object row : element.getKids()) {
+                    if (row instanceof PDStructureElement && "TR".equals(getType((PDStructureElement) row))) {
+                        rows.add((PDStructureElement) row);
+                        rowPages.add(groupPage);
+                    }
+                }
+            }
+        }
+
+        List<List<PDStructureElement>> rowCells = new ArrayList<>();
+        int cellCount = 0;
+        for (PDStructureElement row : rows) {
+            List<PDStructureElement> elements = new ArrayList<>();
+            for (Object kid : row.getKids()) {
+                if (kid instanceof PDStructureElement) {
+                    String type = getType((PDStructureElement) kid);
+                    if ("TD".equals(type) || "TH".equals(type)) {
+                        elements.add((PDStructureElement) kid);
+                    }
+                }
+            }
+            rowCells.add(elements);
+            cellCount += elements.size();
+        }
+
+        // rows of the grid, until which columns are occupied by the cells placed so far
+        int[] occupiedUntil = new int[0];
+        List<TableCell> cells = new ArrayList<>();
+        for (int row = 0; row < rows.size(); row++) {
+            COSDictionary rowPage = getPage(rows.get(row).getCOSObject(), rowPages.get(row));
+            int column = 0;
+            for (PDStructureElement element : rowCells.get(row)) {
+                String type = getType(element);
+                while (column < occupiedUntil.length && occupiedUntil[column] > row) {
+                    column++;
+                }
+                int rowSpan = Math.max(1, Math.min(getTableAttribute(element, "RowSpan"), rows.size() - row));
+                // a table has no more columns than cells, which bounds the grid of a malformed table
+                int columnSpan = Math.max(1, Math.min(getTableAttribute(element, "ColSpan"), cellCount - column));
+
+                if (column + columnSpan > occupiedUntil.length) {
+                    occupiedUntil = Arrays.copyOf(occupiedUntil, column + columnSpan);
+                }
+                Arrays.fill(occupiedUntil, column, column + columnSpan, row + rowSpan);
+
+                TableCell cell = new TableCell(row, column, rowSpan, columnSpan, "TH".equals(type));
+                collectMarkedContent(element, getPage(element.getCOSObject(), rowPage), cell, newIdentitySet());
+                cells.add(cell);
+                column += columnSpan;
+            }
+        }
+
+        addPageTables(occupiedUntil.length, cells);
+    }
+
+    private void collectMarkedContent(PDStructureNode node, COSDictionary page, TableCell cell,
+                                      Set<COSDictionary> collected) {
+        if (!collected.add(node.getCOSObject())) {
+            return;
+        }
+        for (Object kid : node.getKids()) {
+            if (kid instanceof Integer) {
+                cell.add(page, (Integer) kid);
+            } else if (kid instanceof PDMarkedContentReference) {
+                PDMarkedContentReference reference = (PDMarkedContentReference) kid;
+                cell.add(getPage(reference.getCOSObject(), page), reference.getMCID());
+            } else if (kid instanceof PDStructureElement) {
+                PDStructureElement element = (PDStructureElement) kid;
+                collectMarkedContent(element, getPage(element.getCOSObject(), page), cell, collected);
+            }
+        }
+    }
+
+    /**
+     * Splits the table by pages. Every part consists of the rows from the first to the last one with content on the
+     * page, including empty cells of these rows.
+     */
+    private void addPageTables(int columnCount, List<TableCell> cells) {
+        Map<COSDictionary, int[]> rowRanges = new IdentityHashMap<>();
+        for (TableCell cell : cells) {
+            for (COSDictionary page : cell.markedContentIds.keySet()) {
+                int[] range = rowRanges.computeIfAbsent(page, p -> new int[] {cell.row, cell.row});
+                range[0] = Math.min(range[0], cell.row);
+                range[1] = Math.max(range[1], cell.row);
+            }
+        }
+
+        for (Map.Entry<COSDictionary, int[]> rowRange : rowRanges.entrySet()) {
+            COSDictionary page = rowRange.getKey();
+            int firstRow = rowRange.getValue()[0];
+            int lastRow = rowRange.getValue()[1];
+            PageTable pageTable = new PageTable(lastRow - firstRow + 1, columnCount);
+            for (TableCell cell : cells) {
+                if (cell.row < firstRow || cell.row > lastRow) {
+                    continue;
+                }
+                List<Integer> ids = cell.markedContentIds.getOrDefault(page, Collections.emptyList());
+                int[] markedContentIds = new int[ids.size()];
+                for (int i = 0; i < markedContentIds.length; i++) {
+                    markedContentIds[i] = ids.get(i);
+                }
+                pageTable.cells.add(new PageCell(
+                    cell.row - firstRow, cell.column, Math.min(cell.rowSpan, lastRow - cell.row + 1), cell.columnSpan,
+                    cell.header, markedContentIds
+                ));
+            }
+            tablesByPage.computeIfAbsent(page, p -> new ArrayList<>()).add(pageTable);
+        }
+    }
+
+    /**
+     * Reads an integer attribute of the table owner. Attribute objects are read directly, because
+     * {@link PDStructureElement#getAttributes()} skips indirect ones.
+     *
+     * @return value of the attribute or 1 if it is not specified
+     */
+    private static int getTableAttribute(PDStructureElement element, String name) {
+        COSBase attributes = element.getCOSObject().getDictionaryObject(COSName.A);
+        List<COSBase> objects = new ArrayList<>();
+        if (attributes instanceof COSArray) {
+            COSArray array = (COSArray) attributes;
+            for (int i = 0; i < array.size(); i++) {
+                objects.add(array.getObject(i));
+            }
+        } else {
+            objects.add(attributes);
+        }
+
+        int value = 1;
+        for (COSBase object : objects) {
+            if (object instanceof COSDictionary
+                && PDTableAttributeObject.OWNER_TABLE.equals(((COSDictionary) object).getNameAsString(COSName.O))) {
+                value = ((COSDictionary) object).getInt(name, value);
+            }
+        }
+        return value;
+    }
+
+    private String getType(PDStructureElement element) {
+        String type = element.getStructureType();
+        for (int i = 0; i < MAX_ROLE_MAPPING_DEPTH && roleMap.get(type) instanceof String; i++) {
+            type = (String) roleMap.get(type);
+        }
+        return type;
+    }
+
+    /**
+     * @return page of the structure node or the inherited one
+     */
+    private static COSDictionary getPage(COSDictionary node, COSDictionary inherited) {
+        COSBase page = node.getDictionaryObject(COSName.PG);
+        return page instanceof COSDictionary ? (COSDictionary) page : inherited;
+    }
+
+    private static Set<COSDictionary> newIdentitySet() {
+        return Collections.newSetFromMap(new IdentityHashMap<>());
+    }
+
+    private static class TableCell {
+        private final int                                row;
+        private final int                                column;
+        private final int                                rowSpan;
+        private final int                                columnSpan;
+        private final boolean                            header;
+        private final Map<COSDictionary, List<Integer>> markedContentIds = new IdentityHashMap<>();
+
+        private TableCell(int row, int column, int rowSpan, int columnSpan, boolean header) {
+            this.row = row;
+            this.column = column;
+            this.rowSpan = rowSpan;
+            this.columnSpan = columnSpan;
+            this.header = header;
+        }
+
+        private void add(COSDictionary page, int markedContentId) {
+            if (page != null) {
+                markedContentIds.computeIfAbsent(page, p -> new ArrayList<>()).add(markedContentId);
+            }
+        }
+    }
+
+    private static class PageTable {
+        private final int            rowCount;
+        private final int            columnCount;
+        private final List<PageCell> cells = new ArrayList<>();
+
+        private PageTable(int rowCount, int columnCount) {
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+        }
+    }
+
+    private static class PageCell {
+        private final int     row;
+        private final int     column;
+        private final int     rowSpan;
+        private final int     columnSpan;
+        private final boolean header;
+        private final int[]   markedContentIds;
+
+        private PageCell(int row, int column, int rowSpan, int columnSpan, boolean header, int[] markedContentIds) {
+            this.row = row;
+            this.column = column;
+            this.rowSpan = rowSpan;
+            this.columnSpan = columnSpan;
+            this.header = header;
+            this.markedContentIds = markedContentIds;
+        }
+    }
+}
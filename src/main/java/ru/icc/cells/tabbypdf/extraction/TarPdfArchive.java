@@ -0,0 +1,122 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * Uncompressed TAR archive in ustar, GNU or pax format. Entries are never compressed, so all of them are mapped.
+ */
+class TarPdfArchive extends PdfArchive {
+    private static final int BLOCK_SIZE = 512;
+
+    private final long size;
+
+    TarPdfArchive(File file, long maxMainMemoryBytes) throws IOException {
+        super(file, maxMainMemoryBytes);
+        this.size = file.length();
+    }
+
+    @Override
+    void readEntries(BiConsumer<String, DocumentSource> consumer) throws IOException {
+        String longName = null;
+        long position = 0;
+        while (position + BLOCK_SIZE <= size) {
+            ByteBuffer header = read(position, BLOCK_SIZE);
+            if (isZeroBlock(header)) {
+                break;
+            }
+            long entrySize = getSize(header);
+            long dataOffset = position + BLOCK_SIZE;
+            position = dataOffset + (entrySize + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+
+            byte type = header.get(156);
+            if (type == 'L') {
+                // GNU long name of the next entry
+                longName = getString(read(dataOffset, (int) entrySize), 0, (int) entrySize);
+                continue;
+            }
+            if (type == 'x') {
+                longName = getPaxPath(read(dataOffset, (int) entrySize), longName);
+                continue;
+            }
+
+            String name = longName != null ? longName : getName(header);
+            longName = null;
+            if ((type == '0' || type == 0 || type == '7') && isDocument(name)) {
+                consumer.accept(name, map(dataOffset, entrySize));
+            }
+        }
+    }
+
+    private static String getName(ByteBuffer header) {
+        String name = getString(header, 0, 100);
+        if ("ustar".equals(getString(header, 257, 6).trim())) {
+            String prefix = getString(header, 345, 155);
+            if (!prefix.isEmpty()) {
+                return prefix + "/" + name;
+            }
+        }
+        return name;
+    }
+
+    /**
+     * Reads the size given as an octal number or, if it is too large, as a base-256 number
+     */
+    private static long getSize(ByteBuffer header) throws IOException {
+        if ((header.get(124) & 0x80) != 0) {
+            long size = header.get(124) & 0x7f;
+            for (int i = 125; i < 136; i++) {
+                size = (size << 8) | (header.get(i) & 0xff);
+            }
+            return size;
+        }
+        String octal = getString(header, 124, 12).trim();
+        try {
+            return octal.isEmpty() ? 0 : Long.parseLong(octal, 8);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid TAR entry size " + octal, e);
+        }
+    }
+
+    /**
+     * @return path of the pax extended header records "length key=value\n" or the given path if there is none
+     */
+    private static String getPaxPath(ByteBuffer data, String path) {
+        String records = StandardCharsets.UTF_8.decode(data).toString();
+        for (String record : records.split("\n")) {
+            int space = record.indexOf(' ');
+            int equals = record.indexOf('=');
+            if (space >= 0 && equals > space && "path".equals(record.substring(space + 1, equals))) {
+                path = record.substring(equals + 1);
+            }
+        }
+        return path;
+    }
+
+    /**
+     * @return null-terminated string of the field
+     */
+    private static String getString(ByteBuffer buffer, int offset, int length) {
+        int end = offset;
+        while (end < offset + length && buffer.get(end) != 0) {
+            end++;
+        }
+        byte[] bytes = new byte[end - offset];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(offset + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static boolean isZeroBlock(ByteBuffer block) {
+        for (int i = 0; i < BLOCK_SIZE; i++) {
+            if (block.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,156 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.text.TextPosition;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.utils.processing.StringRemover;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.DoubleSummaryStatistics;
+import java.util.List;
+
+import static ru.icc.cells.tabbypdf.utils.PdfUtils.hasSpaceBetweenTextPositions;
+import static ru.icc.cells.tabbypdf.utils.PdfUtils.sameLine;
+
+/**
+ * Joins glyphs of a page into word chunks as the glyphs are shown. A word ends before a glyph separated by a space
+ * (unless it is a bullet) or lying on another line, and a space glyph forms a word itself.
+ * <p>
+ * The last glyph of a page is added twice to the last word, as it has always been done by the extractor.
+ * <p>
+ * Every word gets the marked content id of its first glyph, see {@link #getMarkedContentIds()}.
+ * <p>
+ * If a string remover is given, its strings are removed from the text of words as glyphs are added, and words left
+ * empty are dropped.
+ * <p>
+ * The segmenter is reused for all pages of a worker and is not thread safe.
+ */
+class WordSegmenter {
+    private final FontCharacteristicsCache fonts;
+    private final StringBuilder            text = new StringBuilder();
+    private final StringRemover.Filter     filter;
+
+    // coordinates are computed in float precision like the glyph positions
+    private float                   pageHeight;
+    private List<TextChunk>         words;
+    private TextPosition            previous;
+    private TextPosition            first;
+    private TextPosition            last;
+    private DoubleSummaryStatistics spaceWidths;
+    private int                     previousMarkedContentId;
+    private int                     wordMarkedContentId;
+    private int[]                   markedContentIds = new int[64];
+
+    WordSegmenter(FontCharacteristicsCache fonts, StringRemover stringRemover) {
+        this.fonts = fonts;
+        this.filter = stringRemover != null ? stringRemover.newFilter() : null;
+    }
+
+    /**
+     * Starts segmentation of a new page
+     */
+    void start(float pageHeight) {
+        this.pageHeight = pageHeight;
+        this.words = new ArrayList<>();
+        this.previous = null;
+        this.first = null;
+    }
+
+    void accept(TextPosition current, int markedContentId) {
+        if (previous == null) {
+            append(current, markedContentId);
+            previous = current;
+            previousMarkedContentId = markedContentId;
+            return;
+        }
+
+        boolean isSpace = isSingleChar(current, ' ');
+        if ((hasSpaceBetweenTextPositions(current, previous) && !isSingleChar(current, '•'))
+            || !sameLine(current, previous) || isSpace
+        ) {
+            endWord();
+        }
+
+        append(current, markedContentId);
+        if (isSpace) {
+            endWord();
+        }
+
+        previous = current;
+        previousMarkedContentId = markedContentId;
+    }
+
+    /**
+     * @return words of the page
+     */
+    List<TextChunk> finish() {
+        if (previous != null) {
+            append(previous, previousMarkedContentId);
+            endWord();
+        }
+        List<TextChunk> result = words;
+        words = null;
+        previous = null;
+        return result;
+    }
+
+    /**
+     * @return marked content ids of the words of the last finished page, the array may be longer than the list of
+     * words
+     */
+    int[] getMarkedContentIds() {
+        return markedContentIds;
+    }
+
+    private void append(TextPosition textPosition, int markedContentId) {
+        if (first == null) {
+            first = textPosition;
+            wordMarkedContentId = markedContentId;
+            text.setLength(0);
+            if (filter != null) {
+                filter.clear();
+            }
+            // the same summation as the one of DoubleStream.average()
+            spaceWidths = new DoubleSummaryStatistics();
+        }
+        last = textPosition;
+        if (filter != null) {
+            filter.append(textPosition.getUnicode());
+        } else {
+            text.append(textPosition.getUnicode());
+        }
+        spaceWidths.accept(textPosition.getWidthOfSpace());
+    }
+
+    private void endWord() {
+        if (first == null) {
+            return;
+        }
+        String wordText = filter != null ? filter.toString() : text.toString();
+        // only words left empty by the removed strings are dropped
+        if (filter != null && wordText.isEmpty()) {
+            first = null;
+            last = null;
+            return;
+        }
+        if (words.size() == markedContentIds.length) {
+            markedContentIds = Arrays.copyOf(markedContentIds, words.size() * 2);
+        }
+        markedContentIds[words.size()] = wordMarkedContentId;
+        words.add(new TextChunk(
+            wordText,
+            first.getX(),
+            pageHeight - first.getY(),
+            last.getX() + last.getWidth(),
+            pageHeight - last.getY() + last.getHeight(),
+            fonts.get(last.getFont(), last.getFontSize(), spaceWidths.getAverage())
+        ));
+        first = null;
+        last = null;
+    }
+
+    private static boolean isSingleChar(TextPosition textPosition, char c) {
+        String unicode = textPosition.getUnicode();
+        return unicode.length() == 1 && unicode.charAt(0) == c;
+    }
+}
@@ -0,0 +1,132 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.function.BiConsumer;
+
+/**
+ * ZIP archive read through its central directory, ZIP64 archives included. Only stored and deflated entries are
+ * supported, encrypted entries are skipped.
+ */
+class ZipPdfArchive extends PdfArchive {
+    private static final int     END_SIGNATURE            = 0x06054b50;
+    private static final int     ZIP64_END_SIGNATURE      = 0x06064b50;
+    private static final int     ZIP64_LOCATOR_SIGNATURE  = 0x07064b50;
+    private static final int     CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int     LOCAL_HEADER_SIGNATURE   = 0x04034b50;
+    private static final int     END_SIZE                 = 22;
+    private static final int     MAX_COMMENT_SIZE         = 0xffff;
+    private static final int     ZIP64_EXTRA_ID           = 0x0001;
+    private static final long    ZIP64_MAGIC              = 0xffffffffL;
+    private static final int     STORED                   = 0;
+    private static final int     DEFLATED                 = 8;
+    private static final int     ENCRYPTED_FLAG           = 1;
+    private static final int     UTF8_FLAG                = 1 << 11;
+    private static final Charset CP437                    = Charset.forName("IBM437");
+
+    private final long size;
+
+    ZipPdfArchive(File file, long maxMainMemoryBytes) throws IOException {
+        super(file, maxMainMemoryBytes);
+        this.size = file.length();
+    }
+
+    @Override
+    void readEntries(BiConsumer<String, DocumentSource> consumer) throws IOException {
+        long endPosition = findEnd();
+        ByteBuffer end = read(endPosition, END_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        long entryCount = end.getShort(10) & 0xffff;
+        long directorySize = end.getInt(12) & ZIP64_MAGIC;
+        long directoryOffset = end.getInt(16) & ZIP64_MAGIC;
+
+        if ((entryCount == 0xffff || directorySize == ZIP64_MAGIC || directoryOffset == ZIP64_MAGIC)
+            && endPosition >= 20) {
+            ByteBuffer locator = read(endPosition - 20, 20).order(ByteOrder.LITTLE_ENDIAN);
+            if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+                ByteBuffer zip64End = read(locator.getLong(8), 56).order(ByteOrder.LITTLE_ENDIAN);
+                if (zip64End.getInt(0) != ZIP64_END_SIGNATURE) {
+                    throw new IOException("Invalid ZIP64 end of central directory");
+                }
+                entryCount = zip64End.getLong(32);
+                directoryOffset = zip64End.getLong(48);
+            }
+        }
+
+        long position = directoryOffset;
+        for (long i = 0; i < entryCount; i++) {
+            ByteBuffer header = read(position, 46).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != CENTRAL_HEADER_SIGNATURE) {
+                throw new IOException("Invalid ZIP central directory entry");
+            }
+            int flags = header.getShort(8) & 0xffff;
+            int method = header.getShort(10) & 0xffff;
+            long compressedSize = header.getInt(20) & ZIP64_MAGIC;
+            long uncompressedSize = header.getInt(24) & ZIP64_MAGIC;
+            int nameLength = header.getShort(28) & 0xffff;
+            int extraLength = header.getShort(30) & 0xffff;
+            int commentLength = header.getShort(32) & 0xffff;
+            long localHeaderOffset = header.getInt(42) & ZIP64_MAGIC;
+
+            ByteBuffer variable = read(position + 46, nameLength + extraLength).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] nameBytes = new byte[nameLength];
+            variable.get(nameBytes);
+            String name = new String(nameBytes, (flags & UTF8_FLAG) != 0 ? StandardCharsets.UTF_8 : CP437);
+
+            // sizes and offset, which do not fit the header, are given in the ZIP64 extra field in this order
+            while (variable.remaining() >= 4) {
+                int id = variable.getShort() & 0xffff;
+                int length = variable.getShort() & 0xffff;
+                int next = variable.position() + length;
+                if (id == ZIP64_EXTRA_ID) {
+                    if (uncompressedSize == ZIP64_MAGIC && variable.position() + 8 <= next) {
+                        uncompressedSize = variable.getLong();
+                    }
+                    if (compressedSize == ZIP64_MAGIC && variable.position() + 8 <= next) {
+                        compressedSize = variable.getLong();
+                    }
+                    if (localHeaderOffset == ZIP64_MAGIC && variable.position() + 8 <= next) {
+                        localHeaderOffset = variable.getLong();
+                    }
+                }
+                variable.position(Math.min(next, variable.limit()));
+            }
+            position += 46 + nameLength + extraLength + commentLength;
+
+            if (!isDocument(name) || (flags & ENCRYPTED_FLAG) != 0 || method != STORED && method != DEFLATED) {
+                continue;
+            }
+            long dataOffset = getDataOffset(localHeaderOffset);
+            if (method == STORED) {
+                consumer.accept(name, map(dataOffset, compressedSize));
+            } else {
+                inflate(name, dataOffset, compressedSize, uncompressedSize, consumer);
+            }
+        }
+    }
+
+    private long getDataOffset(long localHeaderOffset) throws IOException {
+        ByteBuffer header = read(localHeaderOffset, 30).order(ByteOrder.LITTLE_ENDIAN);
+        if (header.getInt(0) != LOCAL_HEADER_SIGNATURE) {
+            throw new IOException("Invalid ZIP local file header");
+        }
+        return localHeaderOffset + 30 + (header.getShort(26) & 0xffff) + (header.getShort(28) & 0xffff);
+    }
+
+    /**
+     * @return position of the end of central directory record, which is followed only by the archive comment
+     */
+    private long findEnd() throws IOException {
+        int tailSize = (int) Math.min(size, END_SIZE + MAX_COMMENT_SIZE);
+        ByteBuffer tail = read(size - tailSize, tailSize).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = tailSize - END_SIZE; i >= 0; i--) {
+            if (tail.getInt(i) == END_SIGNATURE) {
+                return size - tailSize + i;
+            }
+        }
+        throw new IOException("Not a ZIP archive");
+    }
+}
@@ -0,0 +1,144 @@
+package ru.icc.cells.tabbypdf.recognition;
+
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.entities.table.Cell;
+import ru.icc.cells.tabbypdf.entities.table.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Builds tables from the logical structure of tagged documents, see
+ * {@link ru.icc.cells.tabbypdf.extraction.ExtractionLayer#STRUCTURE}. Pages without tagged tables are passed to the
+ * fallback recognizer, if it is given.
+ * <p>
+ * Cells are bounded by the content of their columns and rows, the content of a cell forms one text block.
+ */
+public class TaggedTableRecognizer extends AbstractTableRecognizer<Page> {
+    private final Recognizer<Page, Table> fallback;
+
+    public TaggedTableRecognizer() {
+        this(null);
+    }
+
+    /**
+     * @param fallback recognizer of pages without tagged tables, e.g. {@link SimpleTableRecognizer}, may be null
+     */
+    public TaggedTableRecognizer(Recognizer<Page, Table> fallback) {
+        this.fallback = fallback;
+    }
+
+    /**
+     * @return the largest tagged table of the page, the table recognized by the fallback or null if there is neither
+     */
+    @Override
+    public Table recognize(Page from) {
+        TaggedTable largest = null;
+        for (TaggedTable table : from.getTaggedTables()) {
+            if (largest == null || getArea(table) > getArea(largest)) {
+                largest = table;
+            }
+        }
+        if (largest != null) {
+            return recognize(largest);
+        }
+        return fallback == null ? null : fallback.recognize(from);
+    }
+
+    /**
+     * @return all tagged tables of the page or the table recognized by the fallback
+     */
+    public List<Table> recognizeAll(Page from) {
+        List<Table> tables = new ArrayList<>();
+        for (TaggedTable table : from.getTaggedTables()) {
+            tables.add(recognize(table));
+        }
+        if (tables.isEmpty() && fallback != null) {
+            Table table = fallback.recognize(from);
+            if (table != null) {
+                tables.add(table);
+            }
+        }
+        return tables;
+    }
+
+    public Table recognize(TaggedTable from) {
+        double[] columnLefts = new double[from.getColumnCount()];
+        double[] columnRights = new double[from.getColumnCount()];
+        double[] rowTops = new double[from.getRowCount()];
+        double[] rowBottoms = new double[from.getRowCount()];
+        Arrays.fill(columnLefts, Double.NaN);
+        Arrays.fill(columnRights, Double.NaN);
+        Arrays.fill(rowTops, Double.NaN);
+        Arrays.fill(rowBottoms, Double.NaN);
+
+        for (TaggedCell cell : from.getCells()) {
+            int lastColumn = cell.getColumn() + cell.getColumnSpan() - 1;
+            int lastRow = cell.getRow() + cell.getRowSpan() - 1;
+            for (TextChunk chunk : cell.getChunks()) {
+                columnLefts[cell.getColumn()] = min(columnLefts[cell.getColumn()], chunk.getLeft());
+                columnRights[lastColumn] = max(columnRights[lastColumn], chunk.getRight());
+                rowTops[cell.getRow()] = max(rowTops[cell.getRow()], chunk.getTop());
+                rowBottoms[lastRow] = min(rowBottoms[lastRow], chunk.getBottom());
+            }
+        }
+        // rows and columns without own content border on their neighbours or on the table
+        fillGaps(columnLefts, columnRights, from.getLeft(), from.getRight());
+        fillGaps(rowTops, rowBottoms, from.getTop(), from.getBottom());
+
+        Table table = new Table(from.getLeft(), from.getBottom(), from.getRight(), from.getTop());
+        for (TaggedCell cell : from.getCells()) {
+            List<TextBlock> content = new ArrayList<>();
+            if (!cell.getChunks().isEmpty()) {
+                TextBlock block = new TextBlock();
+                cell.getChunks().forEach(block::add);
+                content.add(block);
+            }
+            table.addCell(new Cell(
+                cell.getColumn(),
+                columnLefts[cell.getColumn()],
+                rowBottoms[cell.getRow() + cell.getRowSpan() - 1],
+                columnRights[cell.getColumn() + cell.getColumnSpan() - 1],
+                rowTops[cell.getRow()],
+                cell.getRowSpan(),
+                cell.getColumnSpan(),
+                content
+            ), cell.getRow());
+        }
+        return table;
+    }
+
+    /**
+     * Replaces unknown starts of consecutive intervals by the end (or the start) of the previous interval and unknown
+     * ends by the start of the next one
+     */
+    private static void fillGaps(double[] starts, double[] ends, double first, double last) {
+        for (int i = 0; i < starts.length; i++) {
+            if (Double.isNaN(starts[i])) {
+                starts[i] = i == 0 ? first : Double.isNaN(ends[i - 1]) ? starts[i - 1] : ends[i - 1];
+            }
+        }
+        for (int i = ends.length - 1; i >= 0; i--) {
+            if (Double.isNaN(ends[i])) {
+                ends[i] = i == ends.length - 1 ? last : starts[i + 1];
+            }
+        }
+    }
+
+    private static double min(double current, double value) {
+        return Double.isNaN(current) ? value : Math.min(current, value);
+    }
+
+    private static double max(double current, double value) {
+        return Double.isNaN(current) ? value : Math.max(current, value);
+    }
+
+    private static double getArea(TaggedTable table) {
+        return (table.getRight() - table.getLeft()) * (table.getTop() - table.getBottom());
+    }
+}
@@ -0,0 +1,96 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import lombok.Getter;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.SpaceWidthBiFilter;
+
+import java.util.Arrays;
+
+/**
+ * Features of a block tested by heuristics, which are computed once per block on first use. Chunks of the block
+ * should not change after the features are created, except for separators appended to the last chunk.
+ */
+class BlockFeatures {
+    @Getter
+    private final TextBlock             block;
+    @Getter
+    private final TextChunk             firstChunk;
+    @Getter
+    private final TextChunk             lastChunk;
+    private       Boolean               listMarker;
+    private       FontCharacteristics[] fonts;
+    private       double[]              fontSizes;
+
+    BlockFeatures(TextBlock block) {
+        this.block = block;
+        this.firstChunk = block.getChunks().get(0);
+        this.lastChunk = block.getChunks().get(block.getChunks().size() - 1);
+    }
+
+    /**
+     * @return whether the text of the block is a list item number, see {@link SpaceWidthBiFilter#isListMarker}
+     */
+    boolean isListMarker() {
+        if (listMarker == null) {
+            // separators appended later do not change the flag
+            listMarker = SpaceWidthBiFilter.isListMarker(block);
+        }
+        return listMarker;
+    }
+
+    /**
+     * @return distinct font characteristics of the chunks in the order of chunks
+     */
+    FontCharacteristics[] getFonts() {
+        if (fonts == null) {
+            FontCharacteristics[] distinct = new FontCharacteristics[block.getChunks().size()];
+            int count = 0;
+            for (TextChunk chunk : block.getChunks()) {
+                FontCharacteristics font = chunk.getFontCharacteristics();
+                if (!contains(distinct, count, font)) {
+                    distinct[count++] = font;
+                }
+            }
+            fonts = Arrays.copyOf(distinct, count);
+        }
+        return fonts;
+    }
+
+    /**
+     * @return distinct font sizes of the chunks in the order of chunks
+     */
+    double[] getFontSizes() {
+        if (fontSizes == null) {
+            double[] distinct = new double[block.getChunks().size()];
+            int count = 0;
+            for (TextChunk chunk : block.getChunks()) {
+                if (!contains(distinct, count, chunk.getFontSize())) {
+                    distinct[count++] = chunk.getFontSize();
+                }
+            }
+            fontSizes = Arrays.copyOf(distinct, count);
+        }
+        return fontSizes;
+    }
+
+    /* fonts are usually interned, so they are told apart by identity */
+    private static boolean contains(FontCharacteristics[] fonts, int count, FontCharacteristics font) {
+        for (int i = 0; i < count; i++) {
+            if (fonts[i] == font) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean contains(double[] sizes, int count, double size) {
+        for (int i = 0; i < count; i++) {
+            if (Double.compare(sizes[i], size) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
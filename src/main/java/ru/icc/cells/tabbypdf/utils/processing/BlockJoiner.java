@@ -0,0 +1,159 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins adjacent blocks of a list as repeated passes over the list do. A pass joins every run of blocks, whose
+ * adjacent pairs pass all heuristics, and passes are repeated until a pass joins nothing. Blocks only ever join their
+ * neighbours, so a joined block is kept as the run of the initial blocks it consists of. Heuristics are tested once
+ * for each pair of adjacent blocks: a pass tests only the pairs, whose blocks or neighbours seen by tri heuristics
+ * have been joined by the previous pass, and keeps the results of the other pairs.
+ * <p>
+ * Every pass appends the separator to the last chunk of every block except the last one, the separators are
+ * appended lazily but each chunk gets as many of them as it would get from the passes. Heuristics see the same text
+ * as in the passes, except for the separators ending the blocks, whose pairs are not tested again.
+ */
+class BlockJoiner {
+    private final HeuristicPipeline.Stage heuristics;
+    private final String                  separator;
+    private final boolean                 usesBlockBefore;
+    private final boolean                 usesBlockAfter;
+
+    BlockJoiner(HeuristicPipeline.Stage heuristics, String separator) {
+        this.heuristics = heuristics;
+        this.separator = separator;
+        this.usesBlockBefore = heuristics.usesBlockBefore();
+        this.usesBlockAfter = heuristics.usesBlockAfter();
+    }
+
+    /**
+     * @param blocks    blocks in the reading order
+     * @param minPasses number of passes made even if they join nothing
+     * @return joined blocks, blocks which have not been joined are returned as they are
+     */
+    List<TextBlock> join(List<TextBlock> blocks, int minPasses) {
+        List<Run> runs = new ArrayList<>(blocks.size());
+        for (TextBlock block : blocks) {
+            runs.add(new Run(block));
+        }
+        if (runs.isEmpty()) {
+            return new ArrayList<>();
+        }
+        runs.get(runs.size() - 1).last = true;
+
+        int pass = 0;
+        boolean joined;
+        do {
+            joined = false;
+            for (int i = 0; i < runs.size() - 1; i++) {
+                if (isChanged(runs, i, pass)) {
+                    runs.get(i).joinsNext = test(runs, i, pass);
+                }
+                joined |= runs.get(i).joinsNext;
+            }
+            if (joined) {
+                runs = joinRuns(runs, pass);
+            }
+            pass++;
+        } while (pass < minPasses || joined);
+
+        List<TextBlock> result = new ArrayList<>(runs.size());
+        for (Run run : runs) {
+            run.appendSeparators(pass, separator);
+            result.add(run.block);
+        }
+        return result;
+    }
+
+    /**
+     * @return whether the pair of the i-th and the next block has not been tested with the blocks it is seen with
+     */
+    private boolean isChanged(List<Run> runs, int i, int pass) {
+        if (pass == 0 || runs.get(i).pass == pass - 1 || runs.get(i + 1).pass == pass - 1) {
+            return true;
+        }
+        if (usesBlockBefore && i - 1 >= 0 && runs.get(i - 1).pass == pass - 1) {
+            return true;
+        }
+        return usesBlockAfter && i + 2 < runs.size() && runs.get(i + 2).pass == pass - 1;
+    }
+
+    private boolean test(List<Run> runs, int i, int pass) {
+        // blocks before the pair have got the separator of this pass, blocks after it have not
+        if (usesBlockBefore && i - 1 >= 0) {
+            runs.get(i - 1).appendSeparators(pass + 1, separator);
+        }
+        runs.get(i).appendSeparators(pass + 1, separator);
+        runs.get(i + 1).appendSeparators(pass, separator);
+        if (usesBlockAfter && i + 2 < runs.size()) {
+            runs.get(i + 2).appendSeparators(pass, separator);
+        }
+
+        BlockFeatures before = usesBlockBefore && i - 1 >= 0 ? runs.get(i - 1).features : null;
+        BlockFeatures after = usesBlockAfter && i + 2 < runs.size() ? runs.get(i + 2).features : null;
+        return heuristics.test(before, runs.get(i).features, runs.get(i + 1).features, after);
+    }
+
+    /**
+     * Joins the runs of blocks, whose pairs have passed the heuristics
+     */
+    private List<Run> joinRuns(List<Run> runs, int pass) {
+        List<Run> result = new ArrayList<>();
+        for (int i = 0; i < runs.size(); i++) {
+            Run run = runs.get(i);
+            if (!run.joinsNext) {
+                result.add(run);
+                continue;
+            }
+            TextBlock block = new TextBlock();
+            while (run.joinsNext) {
+                // the last chunk of a joined block is never a last one again
+                run.appendSeparators(pass + 1, separator);
+                block.add(run.block);
+                run = runs.get(++i);
+            }
+            block.add(run.block);
+            Run joinedRun = new Run(block);
+            joinedRun.pass = pass;
+            joinedRun.separators = run.separators;
+            joinedRun.last = run.last;
+            result.add(joinedRun);
+        }
+        return result;
+    }
+
+    /**
+     * Block joined from a run of the initial blocks
+     */
+    private static class Run {
+        private final TextBlock     block;
+        private final BlockFeatures features;
+        /* pass, which has joined the block, -1 for the initial blocks */
+        private       int           pass = -1;
+        /* number of separators appended to the last chunk */
+        private       int           separators;
+        private       boolean       last;
+        private       boolean       joinsNext;
+
+        private Run(TextBlock block) {
+            this.block = block;
+            this.features = new BlockFeatures(block);
+        }
+
+        private void appendSeparators(int count, String separator) {
+            if (last || separators >= count) {
+                return;
+            }
+            TextChunk chunk = features.getLastChunk();
+            StringBuilder text = new StringBuilder(chunk.getText());
+            for (; separators < count; separators++) {
+                text.append(separator);
+            }
+            chunk.setText(text.toString());
+        }
+    }
+}
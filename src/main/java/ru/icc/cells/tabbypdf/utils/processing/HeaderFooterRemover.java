@@ -0,0 +1,336 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Removes running headers and footers from the pages of a document before they are processed. Bands, i.e. lines near
+ * the top or the bottom edge recurring on several pages at the same distance from the edge and with the same text up
+ * to digits, are learned on the first pages. Word chunks of the lines matching a band are removed from every page and
+ * kept in {@link Page#getRemovedChunks()}.
+ * <p>
+ * Only the recurring lines closest to the edge are learned: lines after the first one, which does not recur, are page
+ * content like rows of a table repeated on every page. Lines in image regions or ruled regions, i.e. crossed by a
+ * vertical ruling or enclosed by horizontal rulings in the margin, are not headers or footers either.
+ * <p>
+ * Pages are processed as a stream, only the sampled pages are buffered.
+ */
+@Setter
+@Accessors(chain = true)
+public class HeaderFooterRemover {
+    /* width of a line drawn as a thin rectangle */
+    private static final double MAX_RULING_WIDTH = 2;
+
+    /**
+     * Number of the first pages, on which bands are learned
+     */
+    int    samplePages       = 8;
+    /**
+     * Share of the sampled pages, on which a line should recur to form a band. At least two pages are required
+     */
+    double minPageRatio      = 0.5;
+    /**
+     * Share of the page height at the top and at the bottom of the page, in which headers and footers are looked for
+     */
+    double marginRatio       = 0.15;
+    /**
+     * Distance in points, within which lines are considered to be at the same distance from the edge
+     */
+    double positionTolerance = 2;
+
+    /**
+     * Bands learned on the sampled pages
+     */
+    @Getter
+    private final List<Band> bands = new ArrayList<>();
+
+    /**
+     * Learns bands on the first pages and returns all pages without the lines matching them. Pages are taken from
+     * the source iterator on demand, except for the sampled ones.
+     */
+    public Iterator<Page> process(Iterator<Page> pages) {
+        Deque<Page> sample = new ArrayDeque<>();
+        while (sample.size() < samplePages && pages.hasNext()) {
+            sample.add(pages.next());
+        }
+        learn(sample);
+
+        return new Iterator<Page>() {
+            @Override
+            public boolean hasNext() {
+                return !sample.isEmpty() || pages.hasNext();
+            }
+
+            @Override
+            public Page next() {
+                return HeaderFooterRemover.this.remove(sample.isEmpty() ? pages.next() : sample.poll());
+            }
+        };
+    }
+
+    /**
+     * Replaces the learned bands with the ones recurring on the given pages
+     */
+    public void learn(Iterable<Page> pages) {
+        bands.clear();
+        List<Band> candidates = new ArrayList<>();
+        List<List<Line>> pageLines = new ArrayList<>();
+        for (Page page : pages) {
+            List<Line> lines = findLines(page);
+            Set<Band> pageCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Line line : lines) {
+                line.candidate = findBand(candidates, line);
+                if (line.candidate == null) {
+                    line.candidate = new Band(line.edge, line.text, line.pattern, line.distance);
+                    candidates.add(line.candidate);
+                }
+                if (pageCandidates.add(line.candidate)) {
+                    line.candidate.pageCount++;
+                }
+            }
+            pageLines.add(lines);
+        }
+
+        // candidates are counted again only on the pages, where they are among the recurring lines at the edge
+        int minPageCount = Math.max(2, (int) Math.ceil(minPageRatio * pageLines.size()));
+        Map<Band, Integer> edgePageCounts = new IdentityHashMap<>();
+        for (List<Line> lines : pageLines) {
+            Set<Band> pageCandidates = Collections.newSetFromMap(new IdentityHashMap<>());
+            boolean[] recurring = {true, true};
+            for (Line line : lines) {
+                recurring[line.edge.ordinal()] &= line.candidate.pageCount >= minPageCount;
+                if (recurring[line.edge.ordinal()] && pageCandidates.add(line.candidate)) {
+                    edgePageCounts.merge(line.candidate, 1, Integer::sum);
+                }
+            }
+        }
+
+        for (Band candidate : candidates) {
+            candidate.pageCount = edgePageCounts.getOrDefault(candidate, 0);
+            if (candidate.pageCount >= minPageCount) {
+                bands.add(candidate);
+            }
+        }
+    }
+
+    /**
+     * @return copy of the page without the lines matching the learned bands or the page itself if there are none
+     */
+    public Page remove(Page page) {
+        if (bands.isEmpty()) {
+            return page;
+        }
+        boolean[] removed = new boolean[page.getWordChunks().size()];
+        boolean found = false;
+        for (Line line : findLines(page)) {
+            if (matches(line)) {
+                for (int index : line.indices) {
+                    removed[index] = true;
+                }
+                found = true;
+            }
+        }
+        return found ? page.withoutWordChunks(removed) : page;
+    }
+
+    private boolean matches(Line line) {
+        return findBand(bands, line) != null;
+    }
+
+    /**
+     * @return the first band with the pattern of the line within the position tolerance of the line, if any
+     */
+    private Band findBand(List<Band> bands, Line line) {
+        for (Band band : bands) {
+            if (band.edge == line.edge && band.pattern.equals(line.pattern)
+                && Math.abs(band.distance - line.distance) <= positionTolerance) {
+                return band;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Groups word chunks lying in the top and the bottom margins of the page into lines of vertically overlapping
+     * chunks. Lines of every margin are ordered from the edge of the page, lines in ruled or image regions are left
+     * out
+     */
+    private List<Line> findLines(Page page) {
+        List<TextChunk> words = page.getWordChunks();
+        double margin = (page.getTop() - page.getBottom()) * marginRatio;
+        List<Integer> headerWords = new ArrayList<>();
+        List<Integer> footerWords = new ArrayList<>();
+        for (int i = 0; i < words.size(); i++) {
+            TextChunk word = words.get(i);
+            if (word.getBottom() >= page.getTop() - margin) {
+                headerWords.add(i);
+            } else if (word.getTop() <= page.getBottom() + margin) {
+                footerWords.add(i);
+            }
+        }
+
+        List<Line> lines = new ArrayList<>();
+        addLines(page, words, headerWords, Edge.TOP, lines);
+        int headerLineCount = lines.size();
+        addLines(page, words, footerWords, Edge.BOTTOM, lines);
+        Collections.reverse(lines.subList(headerLineCount, lines.size()));
+
+        lines.removeIf(line -> isInRuledRegion(line, page.getRulings(), getMargin(page, line.edge, margin))
+            || isInImageRegion(line, page.getImageRegions()));
+        return lines;
+    }
+
+    /**
+     * @return the margin at the edge of the page
+     */
+    private static Rectangle getMargin(Page page, Edge edge, double margin) {
+        return edge == Edge.TOP
+            ? new Rectangle(page.getLeft(), page.getTop() - margin, page.getRight(), page.getTop())
+            : new Rectangle(page.getLeft(), page.getBottom(), page.getRight(), page.getBottom() + margin);
+    }
+
+    private static boolean isInRuledRegion(Line line, List<Ruling> rulings, Rectangle margin) {
+        boolean above = false;
+        boolean below = false;
+        for (Ruling ruling : rulings) {
+            Rectangle bounds = Rectangle.fromRuling(ruling);
+            if (bounds.getRight() - bounds.getLeft() <= MAX_RULING_WIDTH) {
+                if (bounds.getLeft() > line.left && bounds.getRight() < line.right
+                    && bounds.getBottom() <= line.bottom && bounds.getTop() >= line.top) {
+                    return true;
+                }
+            } else if (bounds.getTop() - bounds.getBottom() <= MAX_RULING_WIDTH
+                && bounds.getLeft() < line.right && bounds.getRight() > line.left
+                && bounds.getBottom() >= margin.getBottom() && bounds.getTop() <= margin.getTop()) {
+                above |= bounds.getBottom() >= line.top;
+                below |= bounds.getTop() <= line.bottom;
+            }
+        }
+        return above && below;
+    }
+
+    private static boolean isInImageRegion(Line line, List<Rectangle> imageRegions) {
+        for (Rectangle imageRegion : imageRegions) {
+            if (imageRegion.getLeft() <= line.left && imageRegion.getRight() >= line.right
+                && imageRegion.getBottom() <= line.bottom && imageRegion.getTop() >= line.top) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void addLines(Page page, List<TextChunk> words, List<Integer> indices, Edge edge,
+                                 List<Line> lines) {
+        indices.sort(Comparator.comparingDouble((Integer i) -> words.get(i).getTop()).reversed());
+        Line line = null;
+        for (int index : indices) {
+            TextChunk word = words.get(index);
+            if (line == null || Math.min(line.top, word.getTop()) - Math.max(line.bottom, word.getBottom()) <= 0) {
+                addLine(page, words, line, lines);
+                line = new Line(edge, word.getBottom(), word.getTop());
+            }
+            line.indices.add(index);
+            line.bottom = Math.min(line.bottom, word.getBottom());
+            line.top = Math.max(line.top, word.getTop());
+        }
+        addLine(page, words, line, lines);
+    }
+
+    private static void addLine(Page page, List<TextChunk> words, Line line, List<Line> lines) {
+        if (line != null && !line.finish(page, words).pattern.isEmpty()) {
+            lines.add(line);
+        }
+    }
+
+    public enum Edge {
+        TOP, BOTTOM
+    }
+
+    /**
+     * Running header or footer
+     */
+    @Getter
+    public static class Band {
+        private final Edge   edge;
+        /**
+         * Text of the first occurrence of the band
+         */
+        private final String text;
+        /**
+         * Distance between the band and the edge of the page in points
+         */
+        private final double distance;
+        /**
+         * Number of the sampled pages with the band
+         */
+        private       int    pageCount;
+        @Getter(AccessLevel.NONE)
+        private final String pattern;
+
+        private Band(Edge edge, String text, String pattern, double distance) {
+            this.edge = edge;
+            this.text = text;
+            this.pattern = pattern;
+            this.distance = distance;
+        }
+    }
+
+    private static class Line {
+        private final Edge          edge;
+        private final List<Integer> indices = new ArrayList<>();
+        private       double        left;
+        private       double        bottom;
+        private       double        right;
+        private       double        top;
+        private       double        distance;
+        private       String        text;
+        /**
+         * Text without whitespace and with digits replaced, so that page numbers and dates match
+         */
+        private       String        pattern;
+        /**
+         * Candidate band of the line while bands are learned
+         */
+        private       Band          candidate;
+
+        private Line(Edge edge, double bottom, double top) {
+            this.edge = edge;
+            this.bottom = bottom;
+            this.top = top;
+        }
+
+        private Line finish(Page page, List<TextChunk> words) {
+            indices.sort(Comparator.comparingDouble(i -> words.get(i).getLeft()));
+            StringBuilder text = new StringBuilder();
+            left = Double.POSITIVE_INFINITY;
+            right = Double.NEGATIVE_INFINITY;
+            for (int index : indices) {
+                TextChunk word = words.get(index);
+                text.append(word.getText()).append(' ');
+                left = Math.min(left, word.getLeft());
+                right = Math.max(right, word.getRight());
+            }
+            this.text = text.toString().trim();
+            this.pattern = this.text.replaceAll("\\s+", "").replaceAll("\\d", "#");
+            this.distance = edge == Edge.TOP ? page.getTop() - top : bottom - page.getBottom();
+            return this;
+        }
+    }
+}
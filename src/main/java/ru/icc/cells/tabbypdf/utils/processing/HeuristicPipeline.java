@@ -0,0 +1,342 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.BiHeuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.EqualFontAttributesBiHeuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.EqualFontFamilyBiHeuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.EqualFontSizeBiHeuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.HorizontalPositionBiHeuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.SpaceWidthBiFilter;
+import ru.icc.cells.tabbypdf.utils.processing.filter.tri.TriHeuristic;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heuristics of a configuration compiled for joining blocks. Heuristics are split by orientation and their target
+ * classes are resolved once, and they are ordered by their costs, so that cheap heuristics reject pairs of blocks
+ * first. Built-in heuristics are tested on features computed once per block, such as its first and last chunks, its
+ * list item flag and the fonts of its chunks, other heuristics are tested on blocks or chunks as before.
+ * <p>
+ * A pair of blocks is joined only if all heuristics pass it, so the order of heuristics changes only the time spent
+ * on testing, as long as heuristics have no side effects. The order may be frozen by the statistics of a previous
+ * run. In the adaptive mode the pipeline counts tests and rejections of every heuristic, times a sample of the tests
+ * and periodically orders heuristics by the expected time they take to reject a pair, i.e. by their average time
+ * divided by their rejection rate.
+ * <p>
+ * The pipeline is shared by all pages processed with the configuration, see
+ * {@link TextChunkProcessorConfiguration#getHeuristicPipeline()}, the adaptive one is thread safe as well.
+ */
+public class HeuristicPipeline {
+    /* one of so many pairs is timed */
+    private static final int    TIMED_PAIRS     = 16;
+    /* heuristics are ordered again after so many pairs */
+    private static final int    REORDERED_PAIRS = 1024;
+    /* times assumed for heuristics of every cost before their tests are timed */
+    private static final long[] PRIOR_NANOS     = {50, 250, 1000};
+
+    private final Stage horizontal;
+    private final Stage vertical;
+
+    HeuristicPipeline(List<BiHeuristic> biHeuristics, List<TriHeuristic> triHeuristics,
+                      List<HeuristicStatistics> order, boolean adaptive) {
+        this.horizontal = new Stage(biHeuristics, triHeuristics, Heuristic.Orientation.HORIZONTAL, order, adaptive);
+        this.vertical = new Stage(biHeuristics, triHeuristics, Heuristic.Orientation.VERTICAL, order, adaptive);
+    }
+
+    Stage getHorizontal() {
+        return horizontal;
+    }
+
+    Stage getVertical() {
+        return vertical;
+    }
+
+    /**
+     * @return statistics of heuristics of both orientations in the order they are tested, counts are zero unless the
+     * pipeline is adaptive
+     */
+    public List<HeuristicStatistics> getStatistics() {
+        List<HeuristicStatistics> statistics = horizontal.getStatistics();
+        statistics.addAll(vertical.getStatistics());
+        return statistics;
+    }
+
+    /**
+     * @return statistics as lines of tab separated values with a header, see {@link HeuristicStatistics#parse}
+     */
+    public String exportStatistics() {
+        StringBuilder exported = new StringBuilder(HeuristicStatistics.HEADER).append('\n');
+        for (HeuristicStatistics statistics : getStatistics()) {
+            exported.append(statistics).append('\n');
+        }
+        return exported.toString();
+    }
+
+    /**
+     * Heuristics of one orientation
+     */
+    static class Stage {
+        private final Heuristic.Orientation orientation;
+        private final boolean               adaptive;
+        private final boolean               usesBlockBefore;
+        private final boolean               usesBlockAfter;
+        private final AtomicLong            pairs = new AtomicLong();
+        /* the array is replaced as a whole when heuristics are ordered again */
+        private volatile Test[]             tests;
+
+        private Stage(List<BiHeuristic> biHeuristics, List<TriHeuristic> triHeuristics,
+                      Heuristic.Orientation orientation, List<HeuristicStatistics> order, boolean adaptive) {
+            List<Test> tests = new ArrayList<>();
+            boolean usesBlockBefore = false;
+            boolean usesBlockAfter = false;
+            for (BiHeuristic biHeuristic : biHeuristics) {
+                if (hasOrientation(biHeuristic, orientation)) {
+                    tests.add(compile(biHeuristic));
+                }
+            }
+            for (TriHeuristic triHeuristic : triHeuristics) {
+                if (hasOrientation(triHeuristic, orientation)) {
+                    tests.add(compile(triHeuristic));
+                    usesBlockBefore |= triHeuristic.getHeuristicType() == TriHeuristic.TriHeuristicType.BEFORE;
+                    usesBlockAfter |= triHeuristic.getHeuristicType() == TriHeuristic.TriHeuristicType.AFTER;
+                }
+            }
+            // the sort is stable, heuristics of the same cost are tested in the configured order
+            tests.sort(Comparator.comparing(test -> test.cost));
+            freeze(tests, orientation, order);
+            this.orientation = orientation;
+            this.adaptive = adaptive;
+            this.tests = tests.toArray(new Test[0]);
+            this.usesBlockBefore = usesBlockBefore;
+            this.usesBlockAfter = usesBlockAfter;
+        }
+
+        /**
+         * @return whether some heuristic sees the block before the pair
+         */
+        boolean usesBlockBefore() {
+            return usesBlockBefore;
+        }
+
+        /**
+         * @return whether some heuristic sees the block after the pair
+         */
+        boolean usesBlockAfter() {
+            return usesBlockAfter;
+        }
+
+        /**
+         * Tests whether the pair of adjacent blocks can be joined
+         *
+         * @param before block before the pair or null if there is none
+         * @param after  block after the pair or null if there is none
+         */
+        boolean test(BlockFeatures before, BlockFeatures first, BlockFeatures second, BlockFeatures after) {
+            if (adaptive) {
+                return testAdaptively(before, first, second, after);
+            }
+            for (Test test : tests) {
+                if (!test.predicate.test(before, first, second, after)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private boolean testAdaptively(BlockFeatures before, BlockFeatures first, BlockFeatures second,
+                                       BlockFeatures after) {
+            long pair = pairs.incrementAndGet();
+            boolean timed = pair % TIMED_PAIRS == 0;
+            boolean passed = true;
+            for (Test test : tests) {
+                long start = timed ? System.nanoTime() : 0;
+                passed = test.predicate.test(before, first, second, after);
+                if (timed) {
+                    test.nanos.add(System.nanoTime() - start);
+                    test.timedTests.increment();
+                }
+                test.tests.increment();
+                if (!passed) {
+                    test.rejections.increment();
+                    break;
+                }
+            }
+            if (pair % REORDERED_PAIRS == 0) {
+                reorder();
+            }
+            return passed;
+        }
+
+        private synchronized void reorder() {
+            Test[] ordered = tests.clone();
+            Map<Test, Double> times = new HashMap<>();
+            for (Test test : ordered) {
+                // unknown rates and times are smoothed towards one half and the prior time of the cost
+                double rejectionRate = (test.rejections.sum() + 1.0) / (test.tests.sum() + 2.0);
+                double averageNanos = (test.nanos.sum() + (double) PRIOR_NANOS[test.cost.ordinal()])
+                    / (test.timedTests.sum() + 1);
+                times.put(test, averageNanos / rejectionRate);
+            }
+            Arrays.sort(ordered, Comparator.comparing(times::get));
+            tests = ordered;
+        }
+
+        private List<HeuristicStatistics> getStatistics() {
+            List<HeuristicStatistics> statistics = new ArrayList<>();
+            for (Test test : tests) {
+                statistics.add(new HeuristicStatistics(
+                    orientation, test.name, test.cost, test.tests.sum(), test.rejections.sum(),
+                    test.timedTests.sum(), test.nanos.sum()
+                ));
+            }
+            return statistics;
+        }
+    }
+
+    /**
+     * Orders the tests as the heuristics of the orientation are listed, unlisted heuristics are tested last
+     */
+    private static void freeze(List<Test> tests, Heuristic.Orientation orientation, List<HeuristicStatistics> order) {
+        List<String> names = new ArrayList<>();
+        for (HeuristicStatistics statistics : order) {
+            if (statistics.getOrientation() == orientation) {
+                names.add(statistics.getHeuristic());
+            }
+        }
+        if (names.isEmpty()) {
+            return;
+        }
+        Map<Test, Integer> positions = new HashMap<>();
+        for (Test test : tests) {
+            // heuristics of the same class take their positions in turn
+            int position = names.indexOf(test.name);
+            if (position >= 0) {
+                names.set(position, null);
+            }
+            positions.put(test, position >= 0 ? position : Integer.MAX_VALUE);
+        }
+        tests.sort(Comparator.comparing(positions::get));
+    }
+
+    private static boolean hasOrientation(Heuristic heuristic, Heuristic.Orientation orientation) {
+        Heuristic.Orientation heuristicOrientation = heuristic instanceof BiHeuristic
+            ? ((BiHeuristic) heuristic).getOrientation()
+            : ((TriHeuristic) heuristic).getOrientation();
+        return heuristicOrientation == orientation || heuristicOrientation == Heuristic.Orientation.BOTH;
+    }
+
+    private static Test compile(BiHeuristic biHeuristic) {
+        String name = biHeuristic.getClass().getName();
+        Heuristic.Cost cost = biHeuristic.getCost();
+        // built-in heuristics are compiled only if they are not extended
+        Class<?> type = biHeuristic.getClass();
+        if (type == HorizontalPositionBiHeuristic.class) {
+            return new Test(name, cost, (before, first, second, after) ->
+                biHeuristic.test(first.getLastChunk(), second.getFirstChunk()));
+        }
+        if (type == SpaceWidthBiFilter.class) {
+            SpaceWidthBiFilter filter = (SpaceWidthBiFilter) biHeuristic;
+            return new Test(name, cost, (before, first, second, after) ->
+                filter.testChunks(first.getLastChunk(), second.getFirstChunk())
+                    || (filter.isEnableListCheck() && first.isListMarker()));
+        }
+        if (type == EqualFontAttributesBiHeuristic.class) {
+            return new Test(name, cost, (before, first, second, after) -> hasSameFont(first, second));
+        }
+        if (type == EqualFontFamilyBiHeuristic.class) {
+            return new Test(name, cost, (before, first, second, after) -> hasSameFamily(first, second));
+        }
+        if (type == EqualFontSizeBiHeuristic.class) {
+            return new Test(name, cost, (before, first, second, after) -> hasSameFontSize(first, second));
+        }
+
+        Class<?> targetClass = biHeuristic.getTargetClass();
+        if (targetClass.equals(Rectangle.class) || targetClass.equals(TextBlock.class)) {
+            return new Test(name, cost, (before, first, second, after) ->
+                biHeuristic.test(first.getBlock(), second.getBlock()));
+        }
+        if (targetClass.equals(TextChunk.class)) {
+            return new Test(name, cost, (before, first, second, after) ->
+                biHeuristic.test(first.getLastChunk(), second.getFirstChunk()));
+        }
+        throw new IllegalArgumentException("Heuristic " + name + " tests unsupported " + targetClass.getName());
+    }
+
+    private static Test compile(TriHeuristic triHeuristic) {
+        String name = triHeuristic.getClass().getName();
+        if (triHeuristic.getHeuristicType() == TriHeuristic.TriHeuristicType.AFTER) {
+            return new Test(name, triHeuristic.getCost(), (before, first, second, after) ->
+                after == null || triHeuristic.test(first.getBlock(), second.getBlock(), after.getBlock()));
+        }
+        return new Test(name, triHeuristic.getCost(), (before, first, second, after) ->
+            before == null || triHeuristic.test(before.getBlock(), first.getBlock(), second.getBlock()));
+    }
+
+    private static boolean hasSameFont(BlockFeatures first, BlockFeatures second) {
+        for (FontCharacteristics firstFont : first.getFonts()) {
+            for (FontCharacteristics secondFont : second.getFonts()) {
+                if (firstFont.isSameFont(secondFont)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSameFamily(BlockFeatures first, BlockFeatures second) {
+        for (FontCharacteristics firstFont : first.getFonts()) {
+            if (firstFont == null || firstFont.getFontFamily() == null) {
+                continue;
+            }
+            for (FontCharacteristics secondFont : second.getFonts()) {
+                if (secondFont != null && firstFont.isSameFamily(secondFont)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean hasSameFontSize(BlockFeatures first, BlockFeatures second) {
+        for (double firstSize : first.getFontSizes()) {
+            for (double secondSize : second.getFontSizes()) {
+                if (Double.compare(firstSize, secondSize) == 0) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private interface Predicate {
+        boolean test(BlockFeatures before, BlockFeatures first, BlockFeatures second, BlockFeatures after);
+    }
+
+    private static class Test {
+        private final String         name;
+        private final Heuristic.Cost cost;
+        private final Predicate      predicate;
+        /* statistics are collected in the adaptive mode only */
+        private final LongAdder      tests      = new LongAdder();
+        private final LongAdder      rejections = new LongAdder();
+        private final LongAdder      timedTests = new LongAdder();
+        private final LongAdder      nanos      = new LongAdder();
+
+        private Test(String name, Heuristic.Cost cost, Predicate predicate) {
+            this.name = name;
+            this.cost = cost;
+            this.predicate = predicate;
+        }
+    }
+}
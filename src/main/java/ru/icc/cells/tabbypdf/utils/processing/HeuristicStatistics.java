@@ -0,0 +1,80 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import lombok.Getter;
+import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Statistics of a heuristic observed by an adaptive {@link HeuristicPipeline}. Statistics are exported as lines of
+ * tab separated values in the order heuristics are tested, the exported lines can be parsed back to freeze the order,
+ * see {@link TextChunkProcessorConfiguration#setHeuristicOrder(List)}.
+ */
+@Getter
+public class HeuristicStatistics {
+    static final String HEADER = "orientation\theuristic\tcost\ttests\trejections\ttimedTests\tnanos";
+
+    private final Heuristic.Orientation orientation;
+    /* class name of the heuristic */
+    private final String                heuristic;
+    private final Heuristic.Cost        cost;
+    private final long                  tests;
+    private final long                  rejections;
+    /* tests, whose time has been measured */
+    private final long                  timedTests;
+    private final long                  nanos;
+
+    public HeuristicStatistics(Heuristic.Orientation orientation, String heuristic, Heuristic.Cost cost, long tests,
+                               long rejections, long timedTests, long nanos) {
+        this.orientation = orientation;
+        this.heuristic = heuristic;
+        this.cost = cost;
+        this.tests = tests;
+        this.rejections = rejections;
+        this.timedTests = timedTests;
+        this.nanos = nanos;
+    }
+
+    /**
+     * @return share of the tested pairs rejected by the heuristic, 0 if it has not been tested
+     */
+    public double getRejectionRate() {
+        return tests == 0 ? 0 : (double) rejections / tests;
+    }
+
+    /**
+     * @return average time of a test in nanoseconds, 0 if no test has been timed
+     */
+    public double getAverageNanos() {
+        return timedTests == 0 ? 0 : (double) nanos / timedTests;
+    }
+
+    /**
+     * @param exported statistics exported by {@link HeuristicPipeline#exportStatistics()}
+     */
+    public static List<HeuristicStatistics> parse(String exported) {
+        List<HeuristicStatistics> statistics = new ArrayList<>();
+        for (String line : exported.split("\\r?\\n")) {
+            if (line.trim().isEmpty() || line.equals(HEADER)) {
+                continue;
+            }
+            String[] values = line.split("\t");
+            if (values.length != 7) {
+                throw new IllegalArgumentException("Malformed heuristic statistics: " + line);
+            }
+            statistics.add(new HeuristicStatistics(
+                Heuristic.Orientation.valueOf(values[0]), values[1], Heuristic.Cost.valueOf(values[2]),
+                Long.parseLong(values[3]), Long.parseLong(values[4]), Long.parseLong(values[5]),
+                Long.parseLong(values[6])
+            ));
+        }
+        return statistics;
+    }
+
+    @Override
+    public String toString() {
+        return orientation + "\t" + heuristic + "\t" + cost + "\t" + tests + "\t" + rejections + "\t" + timedTests
+            + "\t" + nanos;
+    }
+}
@@ -0,0 +1,143 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Merges intersecting blocks until no two blocks intersect. Of two intersecting blocks the one coming first absorbs
+ * the other one, so a block grown by absorbing may absorb blocks it has not intersected before or be absorbed by a
+ * block preceding it. Blocks are told apart by identity, so blocks with the same bounds are merged as any other ones
+ * and no chunk is lost or kept twice.
+ * <p>
+ * Intersecting blocks are looked for in a uniform grid over the bounds of all blocks, about one block per cell.
+ */
+class OverlapMerger {
+    /* slack of the intersection test, see Rectangle#intersects */
+    private static final double DELTA = 0.001;
+
+    private final List<TextBlock>     blocks;
+    private final List<List<Integer>> cells;
+    private final int                 columns;
+    private final int                 rows;
+    private final double              left;
+    private final double              bottom;
+    private final double              cellWidth;
+    private final double              cellHeight;
+
+    OverlapMerger(List<TextBlock> blocks) {
+        this.blocks = blocks;
+        double left = Double.POSITIVE_INFINITY;
+        double bottom = Double.POSITIVE_INFINITY;
+        double right = Double.NEGATIVE_INFINITY;
+        double top = Double.NEGATIVE_INFINITY;
+        for (TextBlock block : blocks) {
+            left = Double.min(left, block.getLeft());
+            bottom = Double.min(bottom, block.getBottom());
+            right = Double.max(right, block.getRight() + DELTA);
+            top = Double.max(top, block.getTop() + DELTA);
+        }
+        int size = Math.max(1, (int) Math.ceil(Math.sqrt(blocks.size())));
+        this.columns = size;
+        this.rows = size;
+        this.left = left;
+        this.bottom = bottom;
+        this.cellWidth = (right - left) / columns;
+        this.cellHeight = (top - bottom) / rows;
+        this.cells = new ArrayList<>(columns * rows);
+        for (int i = 0; i < columns * rows; i++) {
+            cells.add(new ArrayList<>());
+        }
+        for (int i = 0; i < blocks.size(); i++) {
+            index(i);
+        }
+    }
+
+    /**
+     * @return blocks, which have not been absorbed, in their order
+     */
+    List<TextBlock> merge() {
+        boolean[] absorbed = new boolean[blocks.size()];
+        for (int i = 0; i < blocks.size(); i++) {
+            if (absorbed[i]) {
+                continue;
+            }
+            int host = i;
+            int other = findIntersecting(host, absorbed);
+            while (other >= 0) {
+                // the block coming first absorbs the other one
+                int absorber = Math.min(host, other);
+                int absorbee = Math.max(host, other);
+                blocks.get(absorber).add(blocks.get(absorbee));
+                absorbed[absorbee] = true;
+                host = absorber;
+                index(host);
+                other = findIntersecting(host, absorbed);
+            }
+        }
+        List<TextBlock> result = new ArrayList<>();
+        for (int i = 0; i < blocks.size(); i++) {
+            if (!absorbed[i]) {
+                result.add(blocks.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Adds the block to all cells its bounds cover
+     */
+    private void index(int index) {
+        TextBlock block = blocks.get(index);
+        for (int column = column(block.getLeft()); column <= column(block.getRight() + DELTA); column++) {
+            for (int row = row(block.getBottom()); row <= row(block.getTop() + DELTA); row++) {
+                List<Integer> cell = cells.get(row * columns + column);
+                int position = Collections.binarySearch(cell, index);
+                if (position < 0) {
+                    cell.add(-position - 1, index);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return least index of a block, which intersects the given block and has not been absorbed, or -1 if there is
+     * none
+     */
+    private int findIntersecting(int index, boolean[] absorbed) {
+        TextBlock block = blocks.get(index);
+        int found = -1;
+        for (int column = column(block.getLeft()); column <= column(block.getRight() + DELTA); column++) {
+            for (int row = row(block.getBottom()); row <= row(block.getTop() + DELTA); row++) {
+                for (int other : cells.get(row * columns + column)) {
+                    if (found >= 0 && other >= found) {
+                        break;
+                    }
+                    if (other != index && !absorbed[other] && block.intersects(blocks.get(other))) {
+                        found = other;
+                        break;
+                    }
+                }
+            }
+        }
+        return found;
+    }
+
+    private int column(double x) {
+        return cell(x, left, cellWidth, columns);
+    }
+
+    private int row(double y) {
+        return cell(y, bottom, cellHeight, rows);
+    }
+
+    private static int cell(double coordinate, double origin, double cellSize, int count) {
+        if (!(cellSize > 0)) {
+            return 0;
+        }
+        int cell = (int) ((coordinate - origin) / cellSize);
+        return Math.max(0, Math.min(count - 1, cell));
+    }
+}
@@ -0,0 +1,225 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Removes all occurrences of a set of strings from texts in one pass. The strings are compiled once into an
+ * Aho-Corasick automaton over code points, they are plain strings and not regular expressions. Text is scanned from
+ * its start, the string ending first is removed and scanning goes on after it, of strings ending at the same position
+ * the longest one is removed.
+ * <p>
+ * The remover is immutable and thread safe, a {@link Filter} removes the strings from text appended to it piece by
+ * piece, e.g. glyph by glyph.
+ */
+public class StringRemover {
+    private static final int[] NONE = new int[0];
+
+    /* transitions of a state are sorted by code point */
+    private final int[][] codePoints;
+    private final int[][] targets;
+    private final int[]   failures;
+    /* length in chars of the longest string ending at a state, 0 if there is none */
+    private final int[]   matches;
+
+    private StringRemover(int[][] codePoints, int[][] targets, int[] failures, int[] matches) {
+        this.codePoints = codePoints;
+        this.targets = targets;
+        this.failures = failures;
+        this.matches = matches;
+    }
+
+    /**
+     * @param strings strings to remove, empty strings are ignored
+     */
+    public static StringRemover of(Collection<String> strings) {
+        List<TreeMap<Integer, Integer>> trie = new ArrayList<>();
+        List<Integer> matches = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        matches.add(0);
+        for (String string : strings) {
+            int state = 0;
+            for (int i = 0; i < string.length(); i += Character.charCount(string.codePointAt(i))) {
+                Integer next = trie.get(state).get(string.codePointAt(i));
+                if (next == null) {
+                    next = trie.size();
+                    trie.get(state).put(string.codePointAt(i), next);
+                    trie.add(new TreeMap<>());
+                    matches.add(0);
+                }
+                state = next;
+            }
+            if (state != 0) {
+                matches.set(state, string.length());
+            }
+        }
+
+        int size = trie.size();
+        int[][] codePoints = new int[size][];
+        int[][] targets = new int[size][];
+        for (int state = 0; state < size; state++) {
+            codePoints[state] = trie.get(state).isEmpty() ? NONE : new int[trie.get(state).size()];
+            targets[state] = trie.get(state).isEmpty() ? NONE : new int[trie.get(state).size()];
+            int i = 0;
+            for (Map.Entry<Integer, Integer> transition : trie.get(state).entrySet()) {
+                codePoints[state][i] = transition.getKey();
+                targets[state][i] = transition.getValue();
+                i++;
+            }
+        }
+
+        // failure links are set in breadth-first order, so links of shallower states are ready
+        int[] failures = new int[size];
+        int[] stateMatches = new int[size];
+        Deque<Integer> queue = new ArrayDeque<>(targets[0].length);
+        for (int target : targets[0]) {
+            stateMatches[target] = matches.get(target);
+            queue.add(target);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < codePoints[state].length; i++) {
+                int target = targets[state][i];
+                int failure = failures[state];
+                int next = transition(codePoints, targets, failure, codePoints[state][i]);
+                while (next < 0 && failure != 0) {
+                    failure = failures[failure];
+                    next = transition(codePoints, targets, failure, codePoints[state][i]);
+                }
+                failures[target] = next < 0 ? 0 : next;
+                // a string ending at the state itself is longer than the ones ending at its failure states
+                stateMatches[target] = matches.get(target) > 0 ? matches.get(target) : stateMatches[failures[target]];
+                queue.add(target);
+            }
+        }
+        return new StringRemover(codePoints, targets, failures, stateMatches);
+    }
+
+    /**
+     * @return the text without the strings, the same instance if it contains none of them
+     */
+    public String remove(String text) {
+        StringBuilder result = null;
+        int kept = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            state = next(state, codePoint);
+            if (matches[state] > 0) {
+                if (result == null) {
+                    result = new StringBuilder(text.length());
+                }
+                result.append(text, kept, i - matches[state]);
+                kept = i;
+                state = 0;
+            }
+        }
+        if (result == null) {
+            return text;
+        }
+        return result.append(text, kept, text.length()).toString();
+    }
+
+    /**
+     * @return whether nothing is left of the text after the strings are removed
+     */
+    public boolean removesAll(String text) {
+        int kept = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            state = next(state, codePoint);
+            if (matches[state] > 0) {
+                if (i - matches[state] > kept) {
+                    return false;
+                }
+                kept = i;
+                state = 0;
+            }
+        }
+        return kept == text.length();
+    }
+
+    /**
+     * @return new filter removing the strings from the text appended to it
+     */
+    public Filter newFilter() {
+        return new Filter();
+    }
+
+    private int next(int state, int codePoint) {
+        int next = transition(codePoints, targets, state, codePoint);
+        while (next < 0 && state != 0) {
+            state = failures[state];
+            next = transition(codePoints, targets, state, codePoint);
+        }
+        return next < 0 ? 0 : next;
+    }
+
+    private static int transition(int[][] codePoints, int[][] targets, int state, int codePoint) {
+        int[] keys = codePoints[state];
+        int low = 0;
+        int high = keys.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            if (keys[middle] < codePoint) {
+                low = middle + 1;
+            } else if (keys[middle] > codePoint) {
+                high = middle - 1;
+            } else {
+                return targets[state][middle];
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Text, from which the strings are removed as it is appended. A string may span several appended pieces. The
+     * filter is not thread safe.
+     */
+    public class Filter {
+        private final StringBuilder text = new StringBuilder();
+        private       int           state;
+
+        private Filter() {
+        }
+
+        public Filter append(CharSequence chars) {
+            for (int i = 0; i < chars.length(); ) {
+                int codePoint = Character.codePointAt(chars, i);
+                i += Character.charCount(codePoint);
+                text.appendCodePoint(codePoint);
+                state = next(state, codePoint);
+                if (matches[state] > 0) {
+                    text.setLength(text.length() - matches[state]);
+                    state = 0;
+                }
+            }
+            return this;
+        }
+
+        /**
+         * Clears the text to reuse the filter
+         */
+        public void clear() {
+            text.setLength(0);
+            state = 0;
+        }
+
+        public boolean isEmpty() {
+            return text.length() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return text.toString();
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package ru.icc.cells.tabbypdf.utils.processing;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
 import ru.icc.cells.tabbypdf.utils.processing.filter.bi.BiHeuristic;
@@ -8,14 +9,29 @@ import ru.icc.cells.tabbypdf.utils.processing.filter.tri.TriHeuristic;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @Getter
 public class TextChunkProcessorConfiguration {
-    private List<BiHeuristic>  biHeuristics       = new ArrayList<>();
-    private List<TriHeuristic> triHeuristics      = new ArrayList<>();
-    private List<String>       stringsToReplace   = new ArrayList<>();
-    private boolean            removeColons       = false;
-    private boolean            useCharacterChunks = false;
+    private List<BiHeuristic>         biHeuristics           = new ArrayList<>();
+    private List<TriHeuristic>        triHeuristics          = new ArrayList<>();
+    private List<String>              stringsToReplace       = new ArrayList<>();
+    private boolean                   removeColons           = false;
+    private boolean                   useCharacterChunks     = false;
+    /* heuristics are ordered by their observed rejection rates and times */
+    private boolean                   adaptiveHeuristicOrder = false;
+    /* statistics of a previous run, whose order of heuristics is frozen */
+    private List<HeuristicStatistics> heuristicOrder         = new ArrayList<>();
+
+    /* removers compiled from the strings to replace, they are compiled again if the strings are changed */
+    @Getter(AccessLevel.NONE)
+    private List<String>              compiledStrings;
+    private StringRemover             stringRemover;
+    private StringRemover             wordStringRemover;
+    /* pipeline compiled from the heuristics, it is compiled again if the heuristics or their order are changed */
+    @Getter(AccessLevel.NONE)
+    private List<Heuristic>           compiledHeuristics;
+    private HeuristicPipeline         heuristicPipeline;
 
     public TextChunkProcessorConfiguration addFilter(Heuristic filter) {
         Class<?> filterClass = filter.getClass();
@@ -27,11 +43,77 @@ public class TextChunkProcessorConfiguration {
         return this;
     }
 
+    /**
+     * Adds strings, which are removed from the text of chunks and blocks to find out if they are empty. Strings are
+     * removed literally
+     */
     public TextChunkProcessorConfiguration addStringsToReplace(String[] strings) {
         stringsToReplace.addAll(Arrays.asList(strings));
         return this;
     }
 
+    /**
+     * @return remover of all strings to replace
+     */
+    public synchronized StringRemover getStringRemover() {
+        compile();
+        return stringRemover;
+    }
+
+    /**
+     * @return remover of the strings to replace except a single space, which forms a word itself
+     */
+    public synchronized StringRemover getWordStringRemover() {
+        compile();
+        return wordStringRemover;
+    }
+
+    /**
+     * @return heuristics compiled for joining blocks, the pipeline is shared by all pages
+     * @throws IllegalArgumentException if a bi heuristic tests objects other than rectangles, blocks or chunks
+     */
+    public synchronized HeuristicPipeline getHeuristicPipeline() {
+        List<Heuristic> heuristics = new ArrayList<>(biHeuristics);
+        heuristics.addAll(triHeuristics);
+        if (!heuristics.equals(compiledHeuristics)) {
+            compiledHeuristics = heuristics;
+            heuristicPipeline = new HeuristicPipeline(biHeuristics, triHeuristics, heuristicOrder,
+                adaptiveHeuristicOrder);
+        }
+        return heuristicPipeline;
+    }
+
+    /**
+     * Orders heuristics by their observed rejection rates and times, statistics of the pipeline can be exported to
+     * freeze the order, see {@link HeuristicPipeline#exportStatistics()}
+     */
+    public synchronized TextChunkProcessorConfiguration setAdaptiveHeuristicOrder(boolean adaptiveHeuristicOrder) {
+        this.adaptiveHeuristicOrder = adaptiveHeuristicOrder;
+        compiledHeuristics = null;
+        return this;
+    }
+
+    /**
+     * Tests heuristics in the order of the statistics, heuristics missing in the statistics are tested last
+     *
+     * @param heuristicOrder statistics of a previous run, see {@link HeuristicStatistics#parse}
+     */
+    public synchronized TextChunkProcessorConfiguration setHeuristicOrder(List<HeuristicStatistics> heuristicOrder) {
+        this.heuristicOrder = new ArrayList<>(heuristicOrder);
+        compiledHeuristics = null;
+        return this;
+    }
+
+    private void compile() {
+        if (!stringsToReplace.equals(compiledStrings)) {
+            compiledStrings = new ArrayList<>(stringsToReplace);
+            stringRemover = StringRemover.of(compiledStrings);
+            wordStringRemover = StringRemover.of(
+                compiledStrings.stream().filter(string -> !string.equals(" ")).collect(Collectors.toList())
+            );
+        }
+    }
+
     public TextChunkProcessorConfiguration setRemoveColons(boolean removeColons) {
         this.removeColons = removeColons;
         return this;
@@ -4,4 +4,23 @@ public interface Heuristic {
     enum Orientation {
         VERTICAL, HORIZONTAL, BOTH
     }
+
+    enum Cost {
+        /**
+         * Compares bounds of both rectangles
+         */
+        LOW,
+        MEDIUM,
+        /**
+         * Iterates over chunks of blocks or other page content
+         */
+        HIGH
+    }
+
+    /**
+     * @return cost of a test relative to other heuristics, cheaper heuristics are tested first
+     */
+    default Cost getCost() {
+        return Cost.MEDIUM;
+    }
 }
@@ -8,13 +8,28 @@ import java.lang.reflect.ParameterizedType;
 
 @Getter
 public abstract class BiHeuristic<T extends Rectangle> implements Heuristic {
+    /* type arguments of direct subclasses, resolved once per subclass */
+    private static final ClassValue<Class<?>> TARGET_CLASSES = new ClassValue<Class<?>>() {
+        @Override
+        protected Class<?> computeValue(Class<?> type) {
+            return (Class<?>) ((ParameterizedType) type.getGenericSuperclass()).getActualTypeArguments()[0];
+        }
+    };
+
     private final Orientation orientation;
     private final Class<T>    targetClass;
 
+    /**
+     * Takes the target class from the type argument of the subclass, which should extend this class directly
+     */
     public BiHeuristic(Orientation orientation) {
         this.orientation = orientation;
-        this.targetClass =
-            ((Class<T>) ((ParameterizedType) this.getClass().getGenericSuperclass()).getActualTypeArguments()[0]);
+        this.targetClass = (Class<T>) TARGET_CLASSES.get(this.getClass());
+    }
+
+    public BiHeuristic(Orientation orientation, Class<T> targetClass) {
+        this.orientation = orientation;
+        this.targetClass = targetClass;
     }
 
     public abstract boolean test(T first, T second);
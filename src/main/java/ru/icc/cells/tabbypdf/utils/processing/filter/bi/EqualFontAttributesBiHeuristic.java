@@ -5,11 +5,11 @@ import ru.icc.cells.tabbypdf.entities.TextChunk;
 
 public class EqualFontAttributesBiHeuristic extends BiHeuristic<TextBlock> {
     public EqualFontAttributesBiHeuristic() {
-        super(Orientation.BOTH);
+        super(Orientation.BOTH, TextBlock.class);
     }
 
     public EqualFontAttributesBiHeuristic(Orientation orientation) {
-        super(orientation);
+        super(orientation, TextBlock.class);
     }
 
     @Override
@@ -19,7 +19,12 @@ public class EqualFontAttributesBiHeuristic extends BiHeuristic<TextBlock> {
             .anyMatch(firstFont ->
                 second.getChunks().stream()
                     .map(TextChunk::getFontCharacteristics)
-                    .anyMatch(firstFont::equals)
+                    .anyMatch(firstFont::isSameFont)
             );
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.HIGH;
+    }
 }
@@ -1,6 +1,5 @@
 package ru.icc.cells.tabbypdf.utils.processing.filter.bi;
 
-import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
 import ru.icc.cells.tabbypdf.entities.TextBlock;
 import ru.icc.cells.tabbypdf.entities.TextChunk;
 
@@ -9,11 +8,11 @@ import java.util.Objects;
 public class EqualFontFamilyBiHeuristic extends BiHeuristic<TextBlock> {
 
     public EqualFontFamilyBiHeuristic() {
-        super(Orientation.BOTH);
+        super(Orientation.BOTH, TextBlock.class);
     }
 
     public EqualFontFamilyBiHeuristic(Orientation orientation) {
-        super(orientation);
+        super(orientation, TextBlock.class);
     }
 
     @Override
@@ -22,15 +21,17 @@ public class EqualFontFamilyBiHeuristic extends BiHeuristic<TextBlock> {
             .filter(Objects::nonNull)
             .map(TextChunk::getFontCharacteristics)
             .filter(Objects::nonNull)
-            .map(FontCharacteristics::getFontFamily)
-            .filter(Objects::nonNull)
-            .anyMatch(firstFamily ->
+            .filter(firstFont -> firstFont.getFontFamily() != null)
+            .anyMatch(firstFont ->
                 second.getChunks().stream()
                     .map(TextChunk::getFontCharacteristics)
                     .filter(Objects::nonNull)
-                    .map(FontCharacteristics::getFontFamily)
-                    .filter(Objects::nonNull)
-                    .anyMatch(firstFamily::equals)
+                    .anyMatch(firstFont::isSameFamily)
             );
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.HIGH;
+    }
 }
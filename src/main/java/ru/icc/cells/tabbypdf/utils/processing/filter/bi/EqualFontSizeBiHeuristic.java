@@ -5,20 +5,25 @@ import ru.icc.cells.tabbypdf.entities.TextChunk;
 
 public class EqualFontSizeBiHeuristic extends BiHeuristic<TextBlock> {
     public EqualFontSizeBiHeuristic() {
-        super(Orientation.BOTH);
+        super(Orientation.BOTH, TextBlock.class);
     }
 
     public EqualFontSizeBiHeuristic(Orientation orientation) {
-        super(orientation);
+        super(orientation, TextBlock.class);
     }
 
     @Override
     public boolean test(TextBlock first, TextBlock second) {
         return first.getChunks().stream()
-            .map(TextChunk::getFontSize)
+            .mapToDouble(TextChunk::getFontSize)
             .anyMatch(fontSize -> second.getChunks().stream()
-                .map(TextChunk::getFontSize)
-                .anyMatch(fontSize::equals)
+                .mapToDouble(TextChunk::getFontSize)
+                .anyMatch(otherSize -> Double.compare(fontSize, otherSize) == 0)
             );
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.HIGH;
+    }
 }
@@ -12,7 +12,7 @@ public class HeightBiHeuristic extends BiHeuristic<Rectangle> {
     }
 
     public HeightBiHeuristic(double heightMultiplier) {
-        super(Heuristic.Orientation.VERTICAL);
+        super(Heuristic.Orientation.VERTICAL, Rectangle.class);
         this.heightMultiplier = heightMultiplier;
     }
 
@@ -32,4 +32,9 @@ public class HeightBiHeuristic extends BiHeuristic<Rectangle> {
         );
         return distance <= height;
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
+    }
 }
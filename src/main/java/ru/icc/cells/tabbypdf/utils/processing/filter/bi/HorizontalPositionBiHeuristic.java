@@ -10,7 +10,7 @@ import ru.icc.cells.tabbypdf.entities.TextChunk;
 public class HorizontalPositionBiHeuristic extends BiHeuristic<Rectangle> {
 
     public HorizontalPositionBiHeuristic() {
-        super(Orientation.HORIZONTAL);
+        super(Orientation.HORIZONTAL, Rectangle.class);
     }
 
     @Override
@@ -35,4 +35,9 @@ public class HorizontalPositionBiHeuristic extends BiHeuristic<Rectangle> {
         }
         return (lx1 <= lx2) && (ty1 > by2) && (by1 < ty2);
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
+    }
 }
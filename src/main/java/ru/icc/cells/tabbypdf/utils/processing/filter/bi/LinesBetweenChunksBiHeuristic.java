@@ -9,12 +9,12 @@ public class LinesBetweenChunksBiHeuristic extends BiHeuristic<Rectangle> {
     private List<Ruling> lines;
 
     public LinesBetweenChunksBiHeuristic(List<Ruling> lines) {
-        super(Orientation.BOTH);
+        super(Orientation.BOTH, Rectangle.class);
         this.lines = lines;
     }
 
     public LinesBetweenChunksBiHeuristic(Orientation orientation) {
-        super(orientation);
+        super(orientation, Rectangle.class);
     }
 
     @Override
@@ -48,4 +48,9 @@ public class LinesBetweenChunksBiHeuristic extends BiHeuristic<Rectangle> {
                 return isBetweenChunks;
             });
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.HIGH;
+    }
 }
@@ -1,10 +1,12 @@
 package ru.icc.cells.tabbypdf.utils.processing.filter.bi;
 
+import lombok.Getter;
 import ru.icc.cells.tabbypdf.entities.Rectangle;
 import ru.icc.cells.tabbypdf.entities.TextBlock;
 import ru.icc.cells.tabbypdf.entities.TextChunk;
 import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
 
+@Getter
 public class SpaceWidthBiFilter extends BiHeuristic<Rectangle> {
     private double  spaceWidthMultiplier;
     private boolean enableListCheck;
@@ -14,7 +16,7 @@ public class SpaceWidthBiFilter extends BiHeuristic<Rectangle> {
     }
 
     public SpaceWidthBiFilter(double spaceWidthMultiplier, boolean enableListCheck) {
-        super(Heuristic.Orientation.HORIZONTAL);
+        super(Heuristic.Orientation.HORIZONTAL, Rectangle.class);
         this.spaceWidthMultiplier = spaceWidthMultiplier;
         this.enableListCheck = enableListCheck;
     }
@@ -26,20 +28,22 @@ public class SpaceWidthBiFilter extends BiHeuristic<Rectangle> {
 
     @Override
     public boolean test(Rectangle first, Rectangle second) {
-        TextChunk fc = null, sc = null;
-        boolean isList;
         if (first.getClass().equals(TextChunk.class) && second.getClass().equals(TextChunk.class)) {
-            fc = (TextChunk) first;
-            sc = (TextChunk) second;
-            isList = false;
+            return testChunks((TextChunk) first, (TextChunk) second);
         } else if (first.getClass().equals(TextBlock.class) && second.getClass().equals(TextBlock.class)) {
-            fc = ((TextBlock) first).getChunks().get(((TextBlock) first).getChunks().size() - 1);
-            sc = ((TextBlock) second).getChunks().get(0);
-            isList = ((TextBlock) first).getText().matches("\\d+\\.\\s*");// example: '1. '
+            TextChunk fc = ((TextBlock) first).getChunks().get(((TextBlock) first).getChunks().size() - 1);
+            TextChunk sc = ((TextBlock) second).getChunks().get(0);
+            // the list check is made only if the chunks are too far apart
+            return testChunks(fc, sc) || (enableListCheck && isListMarker((TextBlock) first));
         } else {
             return true;
         }
+    }
 
+    /**
+     * Checks whether the second chunk is at most a multiplied space width after the first one
+     */
+    public boolean testChunks(TextChunk fc, TextChunk sc) {
         if (fc.getRight() >= sc.getLeft()) {
             return true;
         }
@@ -48,7 +52,43 @@ public class SpaceWidthBiFilter extends BiHeuristic<Rectangle> {
             fc.getFontCharacteristics().getSpaceWidth(),
             sc.getFontCharacteristics().getSpaceWidth()
         );
-        return (sc.getLeft() - fc.getRight() <= spaceWidth * spaceWidthMultiplier)
-            || (enableListCheck && isList);
+        return sc.getLeft() - fc.getRight() <= spaceWidth * spaceWidthMultiplier;
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
+    }
+
+    /**
+     * Checks whether the text of the block is a list item number like '1. ', i.e. matches {@code \d+\.\s*}, without
+     * building the text
+     */
+    public static boolean isListMarker(TextBlock block) {
+        int digits = 0;
+        boolean dot = false;
+        for (TextChunk chunk : block.getChunks()) {
+            String text = chunk.getText();
+            for (int i = 0; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (dot) {
+                    if (!isWhitespace(c)) {
+                        return false;
+                    }
+                } else if (c >= '0' && c <= '9') {
+                    digits++;
+                } else if (c == '.' && digits > 0) {
+                    dot = true;
+                } else {
+                    return false;
+                }
+            }
+        }
+        return dot;
+    }
+
+    /* whitespace of regular expressions, \s */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 }
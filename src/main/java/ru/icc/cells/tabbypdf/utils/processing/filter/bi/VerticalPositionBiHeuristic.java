@@ -4,7 +4,7 @@ import ru.icc.cells.tabbypdf.entities.Rectangle;
 
 public class VerticalPositionBiHeuristic extends BiHeuristic<Rectangle> {
     public VerticalPositionBiHeuristic() {
-        super(Orientation.VERTICAL);
+        super(Orientation.VERTICAL, Rectangle.class);
     }
 
     @Override
@@ -17,4 +17,9 @@ public class VerticalPositionBiHeuristic extends BiHeuristic<Rectangle> {
         double ty2 = second.getTop();
         return (rx1 >= lx2) && (lx1 <= rx2) && (ty1 >= ty2);
     }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
+    }
 }
@@ -4,14 +4,20 @@ import ru.icc.cells.tabbypdf.entities.Rectangle;
 import ru.icc.cells.tabbypdf.utils.processing.filter.bi.HorizontalPositionBiHeuristic;
 
 public class CutInAfterTriHeuristic extends TriHeuristic<Rectangle> {
+    private static final HorizontalPositionBiHeuristic HORIZONTAL_POSITION = new HorizontalPositionBiHeuristic();
+
     public CutInAfterTriHeuristic() {
         super(Orientation.VERTICAL, TriHeuristicType.AFTER);
     }
 
     @Override
     public boolean test(Rectangle first, Rectangle second, Rectangle third) {
-        HorizontalPositionBiHeuristic horizontalPositionBiHeuristic = new HorizontalPositionBiHeuristic();
         return !(first.getLeft() <= second.getRight() && first.getRight() >= third.getLeft()
-            && horizontalPositionBiHeuristic.test(second, third));
+            && HORIZONTAL_POSITION.test(second, third));
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
     }
 }
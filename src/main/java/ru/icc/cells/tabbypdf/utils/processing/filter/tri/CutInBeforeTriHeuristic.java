@@ -3,6 +3,7 @@ package ru.icc.cells.tabbypdf.utils.processing.filter.tri;
 import ru.icc.cells.tabbypdf.entities.Rectangle;
 
 public class CutInBeforeTriHeuristic extends TriHeuristic<Rectangle> {
+    private static final CutInAfterTriHeuristic CUT_IN_AFTER = new CutInAfterTriHeuristic();
 
     public CutInBeforeTriHeuristic() {
         super(Orientation.VERTICAL, TriHeuristicType.BEFORE);
@@ -10,7 +11,12 @@ public class CutInBeforeTriHeuristic extends TriHeuristic<Rectangle> {
 
     @Override
     public boolean test(Rectangle first, Rectangle second, Rectangle third) {
-        return new CutInAfterTriHeuristic().test(first, second, third);
+        return CUT_IN_AFTER.test(first, second, third);
+    }
+
+    @Override
+    public Cost getCost() {
+        return Cost.LOW;
     }
 
 }
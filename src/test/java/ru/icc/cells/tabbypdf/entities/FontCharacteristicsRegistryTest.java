@@ -0,0 +1,65 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FontCharacteristicsRegistryTest {
+
+    @Test
+    public void intern() {
+        FontCharacteristicsRegistry registry = new FontCharacteristicsRegistry();
+
+        FontCharacteristics regular = registry.intern(
+            FontCharacteristics.newBuilder().setFontName("Arial").setFontFamily("Arial").setSize(10).build()
+        );
+        FontCharacteristics regularAgain = registry.intern(
+            FontCharacteristics.newBuilder().setFontName("Arial").setFontFamily("Arial").setSize(10).build()
+        );
+        FontCharacteristics bold = registry.intern(
+            FontCharacteristics.newBuilder().setFontName("Arial-Bold").setFontFamily("Arial").setSize(10)
+                .setForceBold(true).build()
+        );
+
+        assertSame(regular, regularAgain);
+        assertSame(regular, registry.get(regular.getId()));
+        assertEquals(2, registry.size());
+
+        assertNotEquals(regular.getId(), bold.getId());
+        assertFalse(regular.isSameFont(bold));
+        assertTrue(regular.isSameFamily(bold));
+    }
+
+    @Test
+    public void compareWithUnregistered() {
+        FontCharacteristicsRegistry registry = new FontCharacteristicsRegistry();
+        FontCharacteristics unregistered =
+            FontCharacteristics.newBuilder().setFontName("Arial").setFontFamily("Arial").setSize(10).build();
+        FontCharacteristics registered = registry.intern(unregistered);
+
+        assertEquals(FontCharacteristics.UNREGISTERED, unregistered.getId());
+        assertTrue(registered.isSameFont(unregistered));
+        assertTrue(registered.isSameFamily(unregistered));
+        assertFalse(registered.isSameFamily(registry.intern(FontCharacteristics.newBuilder().build())));
+        // chunks may have no font characteristics
+        assertFalse(registered.isSameFont(null));
+        assertFalse(unregistered.isSameFamily(null));
+    }
+
+    @Test
+    public void sharedRegistryStripsSubsetTags() {
+        FontCharacteristics subset = FontCharacteristics.newBuilder().setFontName("ABCDEF+Arial").setSize(10).build();
+        FontCharacteristics otherSubset =
+            FontCharacteristics.newBuilder().setFontName("GHIJKL+Arial").setSize(10).build();
+
+        FontCharacteristics shared = FontCharacteristicsRegistry.shared().intern(subset);
+        assertEquals("Arial", shared.getFontName());
+        assertSame(shared, FontCharacteristicsRegistry.shared().intern(otherSubset));
+        assertSame(shared, FontCharacteristicsRegistry.shared().intern(shared));
+
+        // registries of documents keep the names
+        assertEquals("ABCDEF+Arial", new FontCharacteristicsRegistry().intern(subset).getFontName());
+        FontCharacteristics untagged = FontCharacteristics.newBuilder().setFontName("abcdef+Arial").build();
+        assertSame(untagged, untagged.withoutSubsetTag());
+    }
+}
@@ -4,6 +4,7 @@ import org.junit.Test;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.Assert.*;
 
@@ -50,4 +51,25 @@ public class PageTest {
         assertEquals(pageRegion.getRulings().size(), 1);
         assertEquals(pageRegion.getImageRegions().size(), 1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void lazyCharacterChunks() {
+        List<TextChunk> chunks = new ArrayList<TextChunk>() {{
+            add(new TextChunk("", 10, 10, 15, 15, FontCharacteristics.newBuilder().build()));
+            add(new TextChunk("", 75, 175, 80, 180, FontCharacteristics.newBuilder().build()));
+        }};
+        AtomicInteger calls = new AtomicInteger();
+
+        Page page = new Page(0, 0, 100, 200, 0, () -> {
+            calls.incrementAndGet();
+            return chunks;
+        }, chunks, new ArrayList<>(), new ArrayList<>());
+        Page pageRegion = page.getRegion(new Rectangle(0, 0, 50, 50));
+
+        assertEquals(calls.get(), 0);
+        assertEquals(pageRegion.getCharacterChunks().size(), 1);
+        assertSame(pageRegion.getOriginChunks(), pageRegion.getCharacterChunks());
+        assertSame(page.getOriginChunks(), chunks);
+        assertEquals(calls.get(), 1);
+    }
+}
@@ -0,0 +1,44 @@
+package ru.icc.cells.tabbypdf.entities;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TextChunkColumnsTest {
+
+    @Test
+    public void asList() {
+        FontCharacteristicsRegistry registry = new FontCharacteristicsRegistry();
+        List<TextChunk> chunks = new ArrayList<TextChunk>() {{
+            add(new TextChunk("first", 10, 10, 15, 15, FontCharacteristics.newBuilder().setSize(10).build()));
+            add(new TextChunk("", 20, 10, 20, 15, FontCharacteristics.newBuilder().setSize(10).build()));
+            add(new TextChunk("third", 75, 175, 80, 180, FontCharacteristics.newBuilder().setSize(12).build()));
+        }};
+
+        TextChunkColumns columns = TextChunkColumns.of(chunks, registry);
+
+        assertEquals(chunks, columns.asList());
+        assertEquals(2, registry.size());
+        assertEquals(columns.getFontId(0), columns.getFontId(1));
+        assertEquals('h', columns.getChar(2, 1));
+        assertSame(columns, TextChunkColumns.of(columns.asList(), registry));
+    }
+
+    @Test
+    public void within() {
+        FontCharacteristicsRegistry registry = new FontCharacteristicsRegistry();
+        TextChunkColumns columns = TextChunkColumns.newBuilder(registry)
+            .add("first", 10, 10, 15, 15, FontCharacteristics.newBuilder().build())
+            .add("second", 75, 175, 80, 180, FontCharacteristics.newBuilder().build())
+            .build();
+
+        TextChunkColumns region = columns.within(new Rectangle(0, 0, 50, 50));
+
+        assertEquals(1, region.size());
+        assertEquals("first", region.getText(0));
+        assertEquals(15, region.getRight(0), 0);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.junit.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ArtifactSkippingTest {
+    /* the form draws a footer artifact with a line and a word of content */
+    private static final String FORM = ""
+        + "/Artifact BMC BT /F1 12 Tf 0 10 Td (Footer) Tj ET 0 0 m 100 0 l S EMC "
+        + "BT /F1 12 Tf 0 30 Td (Form) Tj ET";
+    private static final String PAGE = ""
+        + "/Artifact BMC BT /F1 12 Tf 100 700 Td (Header) Tj ET 100 690 m 300 690 l S "
+        + "q 50 0 0 20 100 650 cm /Im1 Do Q EMC\n"
+        // the artifact lasts until its own sequence is closed
+        + "/Artifact BMC /Span <</MCID 0>> BDC BT /F1 12 Tf 100 600 Td (Nested) Tj ET EMC "
+        + "BT /F1 12 Tf 100 580 Td (After) Tj ET EMC\n"
+        // an artifact inside of a tagged sequence
+        + "/P <</MCID 1>> BDC /Artifact BMC BT /F1 12 Tf 100 550 Td (Inner) Tj ET EMC "
+        + "BT /F1 12 Tf 100 500 Td (Body) Tj ET EMC\n"
+        // the form drawn as an artifact is recorded under another key than the form drawn as content
+        + "/Artifact BMC q 1 0 0 1 100 100 cm /Fm1 Do Q EMC\n"
+        + "q 1 0 0 1 100 100 cm /Fm1 Do Q\n"
+        + "q 1 0 0 1 100 100 cm /Fm1 Do Q\n";
+
+    @Test
+    public void keepsArtifactsByDefault() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = createPage(document);
+
+            Glyphs glyphs = new Glyphs();
+            PdfContentExtractor extractor = extract(page, false, null, glyphs);
+            // glyphs drawn again at the same position are shown once
+            assertEquals("HeaderNestedAfterInnerBodyFooterForm", glyphs.text.toString());
+            assertEquals(4, extractor.getRulings().size());
+            assertEquals(1, extractor.getImageRegions().size());
+
+            Glyphs cachedGlyphs = new Glyphs();
+            PdfContentExtractor cachingExtractor = extract(page, false, new FormXObjectCache(16), cachedGlyphs);
+            assertEquals(glyphs.text.toString(), cachedGlyphs.text.toString());
+            assertEquals(glyphs.markedContentIds, cachedGlyphs.markedContentIds);
+            assertEquals(extractor.getRulings(), cachingExtractor.getRulings());
+        }
+    }
+
+    @Test
+    public void skipsArtifacts() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = createPage(document);
+
+            Glyphs glyphs = new Glyphs();
+            PdfContentExtractor extractor = extract(page, true, null, glyphs);
+            assertEquals("BodyForm", glyphs.text.toString());
+            List<Integer> markedContentIds = new ArrayList<>();
+            markedContentIds.addAll(Collections.nCopies(4, 1));
+            markedContentIds.addAll(Collections.nCopies(4, -1));
+            assertEquals(markedContentIds, glyphs.markedContentIds);
+            assertTrue(extractor.getRulings().isEmpty());
+            assertTrue(extractor.getImageRegions().isEmpty());
+
+            // the content of the form is not replayed from the recording made inside of the artifact
+            Glyphs cachedGlyphs = new Glyphs();
+            CountingCache cache = new CountingCache();
+            PdfContentExtractor cachingExtractor = extract(page, true, cache, cachedGlyphs);
+            assertEquals("BodyForm", cachedGlyphs.text.toString());
+            assertEquals(markedContentIds, cachedGlyphs.markedContentIds);
+            assertTrue(cachingExtractor.getRulings().isEmpty());
+            assertEquals(3, cache.gets);
+            assertEquals(1, cache.hits);
+        }
+    }
+
+    private static PDPage createPage(PDDocument document) throws IOException {
+        PDFormXObject form = new PDFormXObject(new PDStream(document, toStream(FORM)));
+        form.setBBox(new PDRectangle(0, 0, 200, 50));
+
+        PDPage page = new PDPage();
+        PDResources resources = new PDResources();
+        resources.put(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+        resources.put(COSName.getPDFName("Fm1"), form);
+        resources.put(COSName.getPDFName("Im1"),
+            LosslessFactory.createFromImage(document, new BufferedImage(2, 2, BufferedImage.TYPE_INT_RGB)));
+        page.setResources(resources);
+        page.setContents(new PDStream(document, toStream(PAGE)));
+        document.addPage(page);
+        return page;
+    }
+
+    private static ByteArrayInputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static PdfContentExtractor extract(PDPage page, boolean skipArtifacts, FormXObjectCache cache,
+                                               Glyphs glyphs) {
+        PdfContentExtractor extractor = new PdfContentExtractor(
+            page, PdfContentExtractor.loadGlyphList(), EnumSet.allOf(ExtractionLayer.class), skipArtifacts, cache,
+            (glyph, markedContentId) -> {
+                glyphs.text.append(glyph.getUnicode());
+                glyphs.markedContentIds.add(markedContentId);
+            }
+        );
+        extractor.run();
+        return extractor;
+    }
+
+    private static class Glyphs {
+        private final StringBuilder text             = new StringBuilder();
+        private final List<Integer> markedContentIds = new ArrayList<>();
+    }
+
+    private static class CountingCache extends FormXObjectCache {
+        private int gets;
+        private int hits;
+
+        private CountingCache() {
+            super(16);
+        }
+
+        @Override
+        PdfContentExtractor.FormContent get(Key key) {
+            PdfContentExtractor.FormContent content = super.get(key);
+            gets++;
+            if (content != null) {
+                hits++;
+            }
+            return content;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.io.RandomAccessBufferedFileInputStream;
+import org.apache.pdfbox.io.RandomAccessRead;
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DocumentSourceTest {
+    private static final File DOCUMENT = new File("src/test/resources/pdf/us-025.pdf");
+
+    @Test
+    public void sameContentAsFile() throws IOException {
+        PdfDataExtractor.Factory factory = new PdfDataExtractor.Factory(
+            new PdfDataExtractorConfiguration().setLayers(ExtractionLayer.WORDS).setReopenInterval(1)
+        );
+        List<String> expected = getWords(factory.getPdfBoxTextExtractor(DOCUMENT).getPageContent());
+        byte[] bytes = Files.readAllBytes(DOCUMENT.toPath());
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length + 2);
+        direct.put((byte) 0).put(bytes).flip().position(1);
+        assertEquals(expected, getWords(factory.getPdfBoxTextExtractor(direct).getPageContent(2)));
+        assertEquals(1, direct.position());
+
+        assertEquals(expected, getWords(factory.getPdfBoxTextExtractor(bytes).getPageContent()));
+        assertEquals(expected, getWords(
+            factory.getPdfBoxTextExtractor(new ByteArrayInputStream(bytes)).getPageContent(2)
+        ));
+        try (RandomAccessBufferedFileInputStream source = new RandomAccessBufferedFileInputStream(DOCUMENT)) {
+            assertEquals(expected, getWords(factory.getPdfBoxTextExtractor((RandomAccessRead) source).getPageContent(2)));
+            assertFalse(source.isClosed());
+        }
+    }
+
+    @Test
+    public void progressiveExtraction() throws IOException {
+        PdfDataExtractor.Factory factory = new PdfDataExtractor.Factory(
+            new PdfDataExtractorConfiguration().setLayers(ExtractionLayer.WORDS).setPageWindowSize(1)
+        );
+        for (String name : new String[]{"eu-007.pdf", "us-025.pdf"}) {
+            File document = new File("src/test/resources/pdf/" + name);
+            List<String> expected = getWords(factory.getPdfBoxTextExtractor(document).getPageContent());
+            byte[] bytes = Files.readAllBytes(document.toPath());
+            SlowInputStream input = new SlowInputStream(bytes);
+
+            List<Page> pages = new ArrayList<>();
+            int firstPageRead = -1;
+            try (PdfDataExtractor.PageIterator iterator = factory.getProgressiveTextExtractor(input).getPageIterator()) {
+                while (iterator.hasNext()) {
+                    pages.add(iterator.next());
+                    if (firstPageRead < 0) {
+                        firstPageRead = input.getRead();
+                    }
+                }
+            }
+            assertEquals(expected, getWords(pages));
+            // the first page of the linearized document is extracted from its first part
+            assertEquals(name.startsWith("eu"), firstPageRead < bytes.length / 2);
+        }
+    }
+
+    private static class SlowInputStream extends ByteArrayInputStream {
+        private SlowInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int offset, int length) {
+            return super.read(b, offset, Math.min(length, 256));
+        }
+
+        private int getRead() {
+            return pos;
+        }
+    }
+
+    private static List<String> getWords(List<Page> pages) {
+        List<String> words = new ArrayList<>();
+        for (Page page : pages) {
+            for (TextChunk chunk : page.getWordChunks()) {
+                words.add(chunk.getText() + "@" + chunk.getLeft() + "," + chunk.getBottom());
+            }
+            words.add("--");
+        }
+        return words;
+    }
+}
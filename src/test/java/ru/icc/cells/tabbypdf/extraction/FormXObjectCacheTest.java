@@ -0,0 +1,110 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FormXObjectCacheTest {
+    /* the form uses the font of the page resources and draws a word and a line */
+    private static final String FORM = "BT /F1 12 Tf 0 10 Td (Form) Tj ET 0 0 m 100 0 l S";
+    private static final String PAGE = ""
+        + "q 1 0 0 1 100 600 cm /Fm1 Do Q\n"
+        // the same matrix, the form is replayed
+        + "q 1 0 0 1 100 600 cm /Fm1 Do Q\n"
+        // another matrix, the form is interpreted again
+        + "q 1 0 0 1 100 400 cm /Fm1 Do Q\n"
+        // inside of a text object, the form is neither looked up nor recorded
+        + "q 1 0 0 1 100 200 cm BT /F1 12 Tf /Fm1 Do ET Q\n";
+
+    @Test
+    public void replaysFormsDrawnInSameState() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = createPage(document);
+
+            List<String> expected = new ArrayList<>();
+            PdfContentExtractor extractor = extract(page, null, expected);
+
+            CountingCache cache = new CountingCache();
+            List<String> glyphs = new ArrayList<>();
+            PdfContentExtractor cachingExtractor = extract(page, cache, glyphs);
+
+            // glyphs drawn twice at the same position are shown once
+            assertEquals(12, expected.size());
+            assertEquals(expected, glyphs);
+            assertEquals(4, extractor.getRulings().size());
+            assertEquals(extractor.getRulings(), cachingExtractor.getRulings());
+
+            assertEquals(3, cache.gets);
+            assertEquals(1, cache.hits);
+            assertEquals(2, cache.puts);
+        }
+    }
+
+    private static PDPage createPage(PDDocument document) throws IOException {
+        PDFormXObject form = new PDFormXObject(new PDStream(document, toStream(FORM)));
+        form.setBBox(new PDRectangle(0, 0, 200, 50));
+
+        PDPage page = new PDPage();
+        PDResources resources = new PDResources();
+        resources.put(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+        resources.put(COSName.getPDFName("Fm1"), form);
+        page.setResources(resources);
+        page.setContents(new PDStream(document, toStream(PAGE)));
+        document.addPage(page);
+        return page;
+    }
+
+    private static ByteArrayInputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static PdfContentExtractor extract(PDPage page, FormXObjectCache cache, List<String> glyphs) {
+        PdfContentExtractor extractor = new PdfContentExtractor(
+            page, PdfContentExtractor.loadGlyphList(), EnumSet.allOf(ExtractionLayer.class), false, cache,
+            (glyph, markedContentId) -> glyphs.add(glyph.getUnicode() + "@" + glyph.getX() + "," + glyph.getY())
+        );
+        extractor.run();
+        return extractor;
+    }
+
+    private static class CountingCache extends FormXObjectCache {
+        private int gets;
+        private int hits;
+        private int puts;
+
+        private CountingCache() {
+            super(16);
+        }
+
+        @Override
+        PdfContentExtractor.FormContent get(Key key) {
+            PdfContentExtractor.FormContent content = super.get(key);
+            gets++;
+            if (content != null) {
+                hits++;
+            }
+            return content;
+        }
+
+        @Override
+        void put(Key key, PdfContentExtractor.FormContent content) {
+            puts++;
+            super.put(key, content);
+        }
+    }
+}
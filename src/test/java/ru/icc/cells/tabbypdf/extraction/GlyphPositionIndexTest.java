@@ -0,0 +1,67 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class GlyphPositionIndexTest {
+    @Test
+    public void findsGlyphsWithinHalfOpenRanges() {
+        GlyphPositionIndex index = new GlyphPositionIndex();
+        assertFalse(index.addUnlessDuplicate("a", 10, 10, 1));
+
+        // the lower bound is inclusive
+        assertTrue(index.addUnlessDuplicate("a", 11, 11, 1));
+        // the upper bound is exclusive
+        assertFalse(index.addUnlessDuplicate("a", 9, 10, 1));
+        assertFalse(index.addUnlessDuplicate("a", 10, 9, 1));
+        assertFalse(index.addUnlessDuplicate("b", 10, 10, 1));
+        // an empty range contains nothing
+        assertFalse(index.addUnlessDuplicate("c", 20, 20, 0));
+        assertFalse(index.addUnlessDuplicate("c", 20, 20, 0));
+    }
+
+    @Test
+    public void ordersNegativeZeroBeforeZero() {
+        GlyphPositionIndex index = new GlyphPositionIndex();
+        assertFalse(index.addUnlessDuplicate("a", -0.0f, 5, 1));
+
+        // the ranges are [0.0, 2.0) and [-2.0, 0.0)
+        assertFalse(index.addUnlessDuplicate("a", 1, 5, 1));
+        assertTrue(index.addUnlessDuplicate("a", -1, 5, 1));
+    }
+
+    @Test
+    public void findsGlyphsInNeighbouringCells() {
+        GlyphPositionIndex index = new GlyphPositionIndex();
+        // the glyph lies on the boundary between grid cells
+        assertFalse(index.addUnlessDuplicate("a", 4, 8, 0.5f));
+
+        assertTrue(index.addUnlessDuplicate("a", 3.9f, 7.9f, 0.5f));
+        assertTrue(index.addUnlessDuplicate("a", 4.1f, 8.1f, 0.5f));
+    }
+
+    @Test
+    public void scansAllGlyphsForWideRanges() {
+        GlyphPositionIndex index = new GlyphPositionIndex();
+        assertFalse(index.addUnlessDuplicate("a", 0, 0, 1));
+
+        // the ranges span more grid cells than are looked up
+        assertTrue(index.addUnlessDuplicate("a", 90, -90, 100));
+        assertFalse(index.addUnlessDuplicate("a", 200, 0, 100));
+        assertFalse(index.addUnlessDuplicate("b", 0, 0, 100));
+    }
+
+    @Test
+    public void findsGlyphsAfterGrowth() {
+        GlyphPositionIndex index = new GlyphPositionIndex();
+        // more glyphs than the initial capacity of the table and the arrays
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(index.addUnlessDuplicate(String.valueOf(i % 10), i * 10, i % 7, 1));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(index.addUnlessDuplicate(String.valueOf(i % 10), i * 10 + 0.5f, i % 7, 1));
+            assertFalse(index.addUnlessDuplicate(String.valueOf((i + 1) % 10), i * 10, i % 7 + 100, 1));
+        }
+    }
+}
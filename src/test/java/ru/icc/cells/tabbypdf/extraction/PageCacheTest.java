@@ -0,0 +1,185 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristicsRegistry;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PageCacheTest {
+    private static final File DOCUMENT = new File("src/test/resources/pdf/us-025.pdf");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void extractsSamePagesFromCache() throws IOException {
+        File directory = folder.newFolder();
+        PdfDataExtractor.Factory factory = new PdfDataExtractor.Factory(
+            new PdfDataExtractorConfiguration().setPageCacheDirectory(directory)
+        );
+
+        List<Page> cold = getPages(factory.getPdfBoxTextExtractor(DOCUMENT));
+        File[] files = directory.listFiles();
+        assertEquals(1, files.length);
+        assertTrue(files[0].getName().endsWith(".pages"));
+
+        // glyphs of cached pages are decoded when they are compared
+        assertSamePages(cold, getPages(factory.getPdfBoxTextExtractor(DOCUMENT)));
+        assertSamePages(cold, factory.getPdfBoxTextExtractor(DOCUMENT).getPageContent(2));
+    }
+
+    @Test
+    public void writesAndReadsPages() {
+        FontCharacteristics regular = FontCharacteristics.newBuilder()
+            .setFontName("Arial").setFontFamily("Arial").setSize(10).setSpaceWidth(2.5).build();
+        FontCharacteristics bold = FontCharacteristics.newBuilder()
+            .setFontName("Arial-Bold").setSize(12).setForceBold(true).setSerif(true).build();
+        TextChunk word = new TextChunk("Total", 10, 20, 40, 30, regular);
+        TextChunk number = new TextChunk("42", 50, 20, 60, 32, bold);
+        Page page = new Page(
+            0, 0, 612, 792, 90,
+            Arrays.asList(new TextChunk("T", 10, 20, 16, 30, regular), new TextChunk("4", 50, 20, 55, 32, bold)),
+            Arrays.asList(new TextChunk("T", 10, 20, 16, 30, regular), new TextChunk("4", 50, 20, 55, 32, bold)),
+            Arrays.asList(word, number),
+            Collections.singletonList(new Ruling(5, 15, 100, 15)),
+            Collections.singletonList(new Rectangle(200, 300, 400, 500))
+        );
+        page.setTaggedTables(Collections.singletonList(new TaggedTable(1, 2, Arrays.asList(
+            new TaggedCell(0, 0, 1, 1, true, Collections.singletonList(word)),
+            new TaggedCell(0, 1, 1, 1, false, Collections.singletonList(number))
+        ))));
+        Page empty = new Page(0, 0, 100, 100, 0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+            new ArrayList<>(), new ArrayList<>());
+
+        PageCache cache = new PageCache(folder.getRoot());
+        PageCache.Writer writer = cache.create("pages");
+        writer.add(page);
+        writer.add(empty);
+        writer.commit();
+
+        for (boolean useColumnarStorage : new boolean[] {false, true}) {
+            PageCache.Reader reader = cache.open("pages", new FontCharacteristicsRegistry(), useColumnarStorage);
+            assertEquals(2, reader.size());
+            // pages are read in any order
+            assertSamePage(empty, reader.read(1));
+            assertSamePage(page, reader.read(0));
+        }
+    }
+
+    @Test
+    public void ignoresInvalidFiles() throws IOException {
+        PageCache cache = new PageCache(folder.getRoot());
+        assertNull(cache.open("missing", new FontCharacteristicsRegistry(), false));
+
+        PageCache.Writer writer = cache.create("pages");
+        writer.add(new Page(0, 0, 100, 100, 0, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+            new ArrayList<>(), new ArrayList<>()));
+        writer.commit();
+        File file = new File(folder.getRoot(), "pages.pages");
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        assertNotNull(cache.open("pages", new FontCharacteristicsRegistry(), false));
+
+        // magic
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.writeInt(0);
+        }
+        assertNull(cache.open("pages", new FontCharacteristicsRegistry(), false));
+
+        // version
+        Files.write(file.toPath(), bytes);
+        try (RandomAccessFile output = new RandomAccessFile(file, "rw")) {
+            output.seek(4);
+            output.writeInt(PageCache.VERSION + 1);
+        }
+        assertNull(cache.open("pages", new FontCharacteristicsRegistry(), false));
+
+        // truncated tables and header
+        for (int length : new int[] {bytes.length - 8, 10}) {
+            Files.write(file.toPath(), Arrays.copyOf(bytes, length));
+            assertNull(cache.open("pages", new FontCharacteristicsRegistry(), false));
+        }
+    }
+
+    @Test
+    public void leavesNoFileOfFailedDocument() throws IOException {
+        File directory = folder.newFolder();
+        PdfDataExtractor extractor = new PdfDataExtractor.Factory(
+            new PdfDataExtractorConfiguration().setPageCacheDirectory(directory)
+        ).getPdfBoxTextExtractor("not a document".getBytes("US-ASCII"));
+
+        try {
+            extractor.getPageIterator();
+            fail();
+        } catch (RuntimeException e) {
+            String[] files = directory.list();
+            assertTrue(files == null || files.length == 0);
+        }
+    }
+
+    private static List<Page> getPages(PdfDataExtractor extractor) {
+        List<Page> pages = new ArrayList<>();
+        try (PdfDataExtractor.PageIterator iterator = extractor.getPageIterator()) {
+            while (iterator.hasNext()) {
+                pages.add(iterator.next());
+            }
+        }
+        return pages;
+    }
+
+    private static void assertSamePages(List<Page> expected, List<Page> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSamePage(expected.get(i), actual.get(i));
+        }
+    }
+
+    private static void assertSamePage(Page expected, Page actual) {
+        assertEquals(expected.getLeft(), actual.getLeft(), 0.0);
+        assertEquals(expected.getBottom(), actual.getBottom(), 0.0);
+        assertEquals(expected.getRight(), actual.getRight(), 0.0);
+        assertEquals(expected.getTop(), actual.getTop(), 0.0);
+        assertEquals(expected.getRotation(), actual.getRotation());
+        // chunks are equal if their text, bounds and font characteristics are
+        assertEquals(expected.getWordChunks(), actual.getWordChunks());
+        assertEquals(expected.getCharacterChunks(), actual.getCharacterChunks());
+        assertEquals(expected.getRulings(), actual.getRulings());
+        assertEquals(expected.getImageRegions(), actual.getImageRegions());
+
+        assertEquals(expected.getTaggedTables().size(), actual.getTaggedTables().size());
+        for (int i = 0; i < expected.getTaggedTables().size(); i++) {
+            TaggedTable expectedTable = expected.getTaggedTables().get(i);
+            TaggedTable actualTable = actual.getTaggedTables().get(i);
+            assertEquals(expectedTable.getRowCount(), actualTable.getRowCount());
+            assertEquals(expectedTable.getColumnCount(), actualTable.getColumnCount());
+            assertEquals(expectedTable.getCells().size(), actualTable.getCells().size());
+            for (int j = 0; j < expectedTable.getCells().size(); j++) {
+                TaggedCell expectedCell = expectedTable.getCells().get(j);
+                TaggedCell actualCell = actualTable.getCells().get(j);
+                assertEquals(expectedCell.getRow(), actualCell.getRow());
+                assertEquals(expectedCell.getColumn(), actualCell.getColumn());
+                assertEquals(expectedCell.getRowSpan(), actualCell.getRowSpan());
+                assertEquals(expectedCell.getColumnSpan(), actualCell.getColumnSpan());
+                assertEquals(expectedCell.isHeader(), actualCell.isHeader());
+                assertEquals(expectedCell.getChunks(), actualCell.getChunks());
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.*;
+
+public class PdfArchiveTest {
+    private static final File DOCUMENT = new File("src/test/resources/pdf/us-025.pdf");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void zipEntries() throws IOException {
+        byte[] bytes = Files.readAllBytes(DOCUMENT.toPath());
+        File zip = folder.newFile("documents.zip");
+        try (ZipOutputStream output = new ZipOutputStream(new FileOutputStream(zip))) {
+            ZipEntry stored = new ZipEntry("stored/us-025.pdf");
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+            stored.setMethod(ZipEntry.STORED);
+            stored.setSize(bytes.length);
+            stored.setCrc(crc.getValue());
+            output.putNextEntry(stored);
+            output.write(bytes);
+            output.putNextEntry(new ZipEntry("readme.txt"));
+            output.write("not a document".getBytes());
+            output.putNextEntry(new ZipEntry("deflated.PDF"));
+            output.write(bytes);
+        }
+
+        int expected = getPageCount(DocumentSource.of(DOCUMENT));
+        for (long memory : new long[] {-1, 1024}) {
+            List<String> names = new ArrayList<>();
+            try (PdfArchive archive = PdfArchive.open(zip, memory)) {
+                archive.forEachDocument((name, document) -> {
+                    names.add(name);
+                    assertEquals(expected, getPageCount(document));
+                });
+            }
+            assertEquals(2, names.size());
+            assertEquals("stored/us-025.pdf", names.get(0));
+            assertEquals("deflated.PDF", names.get(1));
+        }
+    }
+
+    private static int getPageCount(DocumentSource document) {
+        return new PdfDataExtractor.Factory(new PdfDataExtractorConfiguration().setLayers(ExtractionLayer.WORDS))
+            .getPdfBoxTextExtractor(document)
+            .getPageContent()
+            .size();
+    }
+}
@@ -0,0 +1,38 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RulingNormalizerTest {
+
+    @Test
+    public void normalize() {
+        List<Ruling> rulings = new ArrayList<Ruling>() {{
+            // thin rectangle drawn as cell border
+            add(new Ruling(10, 100, 50, 100));
+            add(new Ruling(50, 100, 50, 100.5));
+            add(new Ruling(50, 100.5, 10, 100.5));
+            add(new Ruling(10, 100.5, 10, 100));
+            // abutting border of the next cell
+            add(new Ruling(50, 100, 90, 100));
+            // near vertical line
+            add(new Ruling(20.2, 10, 19.8, 60));
+            add(new Ruling(20, 80, 20, 60));
+            // diagonal line drawn twice
+            add(new Ruling(0, 0, 30, 30));
+            add(new Ruling(0, 0, 30, 30));
+        }};
+
+        List<Ruling> normalized = new RulingNormalizer(1).normalize(rulings);
+
+        assertEquals(3, normalized.size());
+        assertEquals(new Ruling(10, (100 + 100.5 + 100) / 3, 90, (100 + 100.5 + 100) / 3), normalized.get(0));
+        assertEquals(new Ruling(20, 10, 20, 80), normalized.get(1));
+        assertEquals(new Ruling(0, 0, 30, 30), normalized.get(2));
+    }
+}
@@ -0,0 +1,82 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SharedFontCacheTest {
+    private static final File DOCUMENT = new File("src/test/resources/pdf/us-025.pdf");
+
+    @Test
+    public void sameContentWithSharedFonts() {
+        List<String> expected = getWords(new PdfDataExtractor.Factory().getPdfBoxTextExtractor(DOCUMENT));
+
+        PdfDataExtractor.Factory factory = new PdfDataExtractor.Factory(
+            new PdfDataExtractorConfiguration().setUseSharedFontCache(true).setPageWindowSize(1)
+        );
+        SharedFontCache cache = SharedFontCache.shared();
+        assertEquals(expected, getWords(factory.getPdfBoxTextExtractor(DOCUMENT)));
+        long hits = cache.getHits();
+        long misses = cache.getMisses();
+        assertTrue(cache.size() > 0);
+
+        // fonts of the second document are lent by the cache
+        assertEquals(expected, getWords(factory.getPdfBoxTextExtractor(DOCUMENT)));
+        assertTrue(cache.getHits() > hits);
+        assertEquals(misses, cache.getMisses());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedFonts() throws IOException {
+        SharedFontCache cache = new SharedFontCache(1);
+        try (PDDocument document = PDDocument.load(DOCUMENT)) {
+            int fonts = loadFonts(document, cache);
+            assertTrue(fonts > 1);
+            assertEquals(fonts, cache.getMisses());
+            assertEquals(1, cache.size());
+            assertEquals(fonts - 1, cache.getEvictions());
+
+            assertEquals(fonts, loadFonts(document, cache));
+            assertEquals(1, cache.getHits());
+            cache.clear();
+            assertEquals(0, cache.size());
+        }
+    }
+
+    /**
+     * Loads the fonts of the first page through a new resource cache and returns them to the shared cache
+     */
+    private static int loadFonts(PDDocument document, SharedFontCache cache) throws IOException {
+        SharedFontCache.DocumentFonts documentFonts = cache.newResourceCache();
+        document.setResourceCache(documentFonts);
+        PDResources resources = document.getPage(0).getResources();
+        int fonts = 0;
+        for (COSName name : resources.getFontNames()) {
+            assertNotNull(resources.getFont(name));
+            fonts++;
+        }
+        documentFonts.release();
+        return fonts;
+    }
+
+    private static List<String> getWords(PdfDataExtractor extractor) {
+        List<String> words = new ArrayList<>();
+        for (Page page : extractor.getPageContent()) {
+            for (TextChunk chunk : page.getWordChunks()) {
+                words.add(chunk.getText() + "@" + chunk.getLeft() + "," + chunk.getBottom() + ","
+                          + chunk.getFontCharacteristics().getFontName());
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,227 @@
+package ru.icc.cells.tabbypdf.extraction;
+
+import org.apache.pdfbox.cos.COSArray;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSDictionary;
+import org.apache.pdfbox.cos.COSInteger;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class StructureTreeTablesTest {
+    @Test
+    public void placesCellsOnGrid() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = addPage(document, text(0, "Name", 700) + text(1, "Value", 680) + text(2, "Min", 660)
+                + text(3, "Max", 640) + text(4, "x", 620) + text(5, "1", 600) + text(6, "2", 580));
+            COSDictionary table = element("Table",
+                element("THead",
+                    element("TR", span(cell("TH", 0), "RowSpan", 2), span(cell("TH", 1), "ColSpan", 2)),
+                    element("TR", cell("TH", 2), cell("TH", 3))
+                ),
+                element("TBody",
+                    element("TR", cell("TD", 4), cell("TD", 5), cell("TD", 6))
+                )
+            );
+            table.setItem(COSName.PG, page.getCOSObject());
+            setStructureTree(document, element("Sect", table));
+
+            List<List<TaggedTable>> tables = getTables(document);
+            assertEquals(1, tables.get(0).size());
+            // rows of the groups are rows of the table, spanned columns are skipped
+            assertTable(tables.get(0).get(0), 3, 3,
+                "TH 0,0 2x1 Name", "TH 0,1 1x2 Value", "TH 1,1 1x1 Min", "TH 1,2 1x1 Max",
+                "TD 2,0 1x1 x", "TD 2,1 1x1 1", "TD 2,2 1x1 2"
+            );
+        }
+    }
+
+    @Test
+    public void collectsWordsOfCells() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = addPage(document, text(0, "Total", 700) + text(1, "of", 680) + text(2, "all", 660)
+                + text(3, "42", 640) + text(4, "Note", 620));
+            COSDictionary reference = new COSDictionary();
+            reference.setItem(COSName.TYPE, COSName.getPDFName("MCR"));
+            reference.setItem(COSName.PG, page.getCOSObject());
+            reference.setInt(COSName.MCID, 2);
+            COSDictionary table = element("Table",
+                // ids are given directly, by references and by nested elements
+                element("TR", element("TD", element("P", COSInteger.get(1)), reference, COSInteger.get(0)),
+                    cell("TD", 3))
+            );
+            table.setItem(COSName.PG, page.getCOSObject());
+            setStructureTree(document, table, cell("P", 4));
+
+            List<List<TaggedTable>> tables = getTables(document);
+            assertEquals(1, tables.get(0).size());
+            // words of a cell are in the order of the page
+            assertTable(tables.get(0).get(0), 1, 2, "TD 0,0 1x1 Total of all", "TD 0,1 1x1 42");
+        }
+    }
+
+    @Test
+    public void splitsTablesByPages() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage first = addPage(document, text(0, "A", 700) + text(1, "B", 680) + text(2, "C", 660)
+                + text(3, "X", 640));
+            PDPage second = addPage(document, text(0, "D", 700) + text(1, "E", 680) + text(2, "F", 660));
+            COSDictionary next = element("TR", cell("TD", 0));
+            next.setItem(COSName.PG, second.getCOSObject());
+            COSDictionary last = element("TR", cell("TD", 1), cell("TD", 2));
+            last.setItem(COSName.PG, second.getCOSObject());
+            COSDictionary table = element("Table",
+                element("TR", cell("TD", 0), cell("TD", 1)),
+                element("TR", span(cell("TD", 2), "RowSpan", 2), cell("TD", 3)),
+                next, last
+            );
+            table.setItem(COSName.PG, first.getCOSObject());
+            setStructureTree(document, table);
+
+            List<List<TaggedTable>> tables = getTables(document);
+            assertEquals(1, tables.get(0).size());
+            // a cell spanning rows of the next page is cut at the last row of the page
+            assertTable(tables.get(0).get(0), 2, 2, "TD 0,0 1x1 A", "TD 0,1 1x1 B", "TD 1,0 1x1 C", "TD 1,1 1x1 X");
+            assertEquals(1, tables.get(1).size());
+            assertTable(tables.get(1).get(0), 2, 2, "TD 0,1 1x1 D", "TD 1,0 1x1 E", "TD 1,1 1x1 F");
+        }
+    }
+
+    @Test
+    public void visitsCyclicElementsOnce() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = addPage(document, text(0, "A", 700) + text(1, "B", 680));
+            COSDictionary first = cell("TD", 0);
+            COSDictionary row = element("TR", first, cell("TD", 1));
+            COSDictionary table = element("Table", row);
+            table.setItem(COSName.PG, page.getCOSObject());
+            // the cell refers to its row and the section to itself
+            ((COSArray) first.getDictionaryObject(COSName.K)).add(row);
+            COSDictionary section = element("Sect", table);
+            ((COSArray) section.getDictionaryObject(COSName.K)).add(section);
+            setStructureTree(document, section);
+
+            List<List<TaggedTable>> tables = getTables(document);
+            assertEquals(1, tables.get(0).size());
+            assertTable(tables.get(0).get(0), 1, 2, "TD 0,0 1x1 A B", "TD 0,1 1x1 B");
+        }
+    }
+
+    @Test
+    public void clampsColumnSpans() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = addPage(document, text(0, "Title", 700) + text(1, "A", 680) + text(2, "B", 660));
+            COSDictionary table = element("Table",
+                element("TR", span(cell("TD", 0), "ColSpan", Integer.MAX_VALUE)),
+                element("TR", cell("TD", 1), span(cell("TD", 2), "ColSpan", 1000000000))
+            );
+            table.setItem(COSName.PG, page.getCOSObject());
+            setStructureTree(document, table);
+
+            List<List<TaggedTable>> tables = getTables(document);
+            assertEquals(1, tables.get(0).size());
+            // a table has no more columns than cells
+            assertTable(tables.get(0).get(0), 2, 3, "TD 0,0 1x3 Title", "TD 1,0 1x1 A", "TD 1,1 1x2 B");
+        }
+    }
+
+    private static PDPage addPage(PDDocument document, String content) throws IOException {
+        PDPage page = new PDPage();
+        PDResources resources = new PDResources();
+        resources.put(COSName.getPDFName("F1"), PDType1Font.HELVETICA);
+        page.setResources(resources);
+        // the last glyph of a page is added twice to the last word, which is left out of the tables
+        page.setContents(new PDStream(document, toStream(content + "BT /F1 12 Tf 100 100 Td (End) Tj ET")));
+        document.addPage(page);
+        return page;
+    }
+
+    /* a word marked with the id on its own line */
+    private static String text(int markedContentId, String text, int y) {
+        return "/Span <</MCID " + markedContentId + ">> BDC BT /F1 12 Tf 100 " + y + " Td (" + text + ") Tj ET EMC\n";
+    }
+
+    private static COSDictionary element(String type, COSBase... kids) {
+        COSDictionary element = new COSDictionary();
+        element.setItem(COSName.TYPE, COSName.getPDFName("StructElem"));
+        element.setItem(COSName.S, COSName.getPDFName(type));
+        COSArray array = new COSArray();
+        for (COSBase kid : kids) {
+            array.add(kid);
+        }
+        element.setItem(COSName.K, array);
+        return element;
+    }
+
+    private static COSDictionary cell(String type, int markedContentId) {
+        return element(type, COSInteger.get(markedContentId));
+    }
+
+    private static COSDictionary span(COSDictionary element, String name, int value) {
+        COSDictionary attributes = new COSDictionary();
+        attributes.setName(COSName.O, "Table");
+        attributes.setInt(name, value);
+        element.setItem(COSName.A, attributes);
+        return element;
+    }
+
+    private static void setStructureTree(PDDocument document, COSDictionary... kids) {
+        COSDictionary root = new COSDictionary();
+        root.setItem(COSName.TYPE, COSName.getPDFName("StructTreeRoot"));
+        COSArray array = new COSArray();
+        for (COSDictionary kid : kids) {
+            array.add(kid);
+        }
+        root.setItem(COSName.K, array);
+        document.getDocumentCatalog().getCOSObject().setItem(COSName.STRUCT_TREE_ROOT, root);
+    }
+
+    private static List<List<TaggedTable>> getTables(PDDocument document) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        document.save(output);
+        List<List<TaggedTable>> tables = new ArrayList<>();
+        for (Page page : new PdfDataExtractor.Factory(new PdfDataExtractorConfiguration())
+            .getPdfBoxTextExtractor(output.toByteArray()).getPageContent()) {
+            tables.add(page.getTaggedTables());
+        }
+        return tables;
+    }
+
+    private static void assertTable(TaggedTable table, int rowCount, int columnCount, String... cells) {
+        assertEquals(rowCount, table.getRowCount());
+        assertEquals(columnCount, table.getColumnCount());
+        List<String> actual = new ArrayList<>();
+        for (TaggedCell cell : table.getCells()) {
+            StringBuilder builder = new StringBuilder(cell.isHeader() ? "TH " : "TD ")
+                .append(cell.getRow()).append(',').append(cell.getColumn()).append(' ')
+                .append(cell.getRowSpan()).append('x').append(cell.getColumnSpan());
+            for (TextChunk chunk : cell.getChunks()) {
+                builder.append(' ').append(chunk.getText());
+            }
+            actual.add(builder.toString());
+        }
+        assertEquals(Arrays.asList(cells), actual);
+    }
+
+    private static ByteArrayInputStream toStream(String content) {
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.US_ASCII));
+    }
+}
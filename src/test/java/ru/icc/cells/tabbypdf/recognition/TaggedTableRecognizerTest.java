@@ -0,0 +1,59 @@
+package ru.icc.cells.tabbypdf.recognition;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.TaggedCell;
+import ru.icc.cells.tabbypdf.entities.TaggedTable;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.entities.table.Cell;
+import ru.icc.cells.tabbypdf.entities.table.Table;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TaggedTableRecognizerTest {
+
+    @Test
+    public void recognize() {
+        List<TaggedCell> cells = new ArrayList<TaggedCell>() {{
+            // header spanning both columns
+            add(new TaggedCell(0, 0, 1, 2, true, Arrays.asList(chunk("Name", 10, 90, 40, 100),
+                chunk("Value", 45, 90, 80, 100))));
+            add(new TaggedCell(1, 0, 1, 1, false, Collections.singletonList(chunk("a", 10, 70, 20, 80))));
+            // empty cell
+            add(new TaggedCell(1, 1, 1, 1, false, Collections.emptyList()));
+            add(new TaggedCell(2, 0, 1, 1, false, Collections.singletonList(chunk("b", 10, 50, 30, 60))));
+            add(new TaggedCell(2, 1, 1, 1, false, Collections.singletonList(chunk("2", 60, 50, 70, 60))));
+        }};
+        TaggedTable taggedTable = new TaggedTable(3, 2, cells);
+
+        Table table = new TaggedTableRecognizer().recognize(taggedTable);
+
+        assertEquals(3, table.getRowsSize());
+        assertEquals(2, table.getColumnsSize());
+        assertEquals(10, table.getLeft(), 0);
+        assertEquals(50, table.getBottom(), 0);
+        assertEquals(80, table.getRight(), 0);
+        assertEquals(100, table.getTop(), 0);
+
+        Cell header = table.getRow(0).getCells().get(0);
+        assertEquals("NameValue", header.getText());
+        assertEquals(2, header.getColumnWidth());
+        assertEquals(80, header.getRight(), 0);
+
+        Cell empty = table.getRow(1).getCells().get(1);
+        assertEquals("", empty.getText());
+        assertEquals(60, empty.getLeft(), 0);
+        assertEquals(80, empty.getRight(), 0);
+        assertEquals(70, empty.getBottom(), 0);
+        assertEquals(80, empty.getTop(), 0);
+    }
+
+    private static TextChunk chunk(String text, double left, double bottom, double right, double top) {
+        return new TextChunk(text, left, bottom, right, top, FontCharacteristics.newBuilder().build());
+    }
+}
@@ -0,0 +1,76 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.BiHeuristic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BlockJoinerTest {
+
+    @Test
+    public void joinsAsRepeatedPasses() {
+        List<TextBlock> blocks = new ArrayList<>();
+        blocks.add(block("a", 0, 10));
+        blocks.add(block("b", 12, 20));
+        blocks.add(block("c", 30, 35));
+        blocks.add(block("d", 45, 50));
+        blocks.add(block("e", 60, 65));
+        WideOrCloseBlocks heuristic = new WideOrCloseBlocks();
+
+        List<TextBlock> joined = new BlockJoiner(horizontal(heuristic), " ").join(blocks, 2);
+
+        assertEquals(1, joined.size());
+        // every pass appends a separator to the blocks which are not joined yet
+        assertEquals("a b  c   d    e", joined.get(0).getText());
+        assertEquals(65, joined.get(0).getRight(), 0.0);
+        // four pairs on the first pass and only the pair of the joined block on each of the next three passes
+        assertEquals(7, heuristic.tests);
+    }
+
+    @Test
+    public void makesMinimalPasses() {
+        List<TextBlock> blocks = new ArrayList<>();
+        blocks.add(block("a", 0, 5));
+        blocks.add(block("b", 20, 25));
+
+        List<TextBlock> joined = new BlockJoiner(horizontal(new WideOrCloseBlocks()), "\n").join(blocks, 2);
+
+        assertEquals(2, joined.size());
+        assertEquals("a\n\n", joined.get(0).getText());
+        assertEquals("b", joined.get(1).getText());
+    }
+
+    private static HeuristicPipeline.Stage horizontal(Heuristic heuristic) {
+        return new TextChunkProcessorConfiguration().addFilter(heuristic).getHeuristicPipeline().getHorizontal();
+    }
+
+    private static TextBlock block(String text, double left, double right) {
+        TextBlock block = new TextBlock();
+        block.add(new TextChunk(text, left, 0, right, 10, FontCharacteristics.newBuilder().build()));
+        return block;
+    }
+
+    /**
+     * Joins blocks, which are close to each other or follow a wide block
+     */
+    private static class WideOrCloseBlocks extends BiHeuristic<TextBlock> {
+        private int tests;
+
+        private WideOrCloseBlocks() {
+            super(Heuristic.Orientation.HORIZONTAL);
+        }
+
+        @Override
+        public boolean test(TextBlock first, TextBlock second) {
+            tests++;
+            return second.getLeft() - first.getRight() < 5 || first.getRight() - first.getLeft() >= 15;
+        }
+    }
+}
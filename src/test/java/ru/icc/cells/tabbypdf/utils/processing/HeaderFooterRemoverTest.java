@@ -0,0 +1,109 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.Page;
+import ru.icc.cells.tabbypdf.entities.Rectangle;
+import ru.icc.cells.tabbypdf.entities.Ruling;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HeaderFooterRemoverTest {
+
+    @Test
+    public void process() {
+        List<Page> pages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            List<TextChunk> words = new ArrayList<>();
+            if (i != 3) {
+                words.add(chunk("Annual", 10, 190, 30, 195));
+                words.add(chunk("report", 32, 190, 50, 195));
+            }
+            words.add(chunk("Body " + i, 10, 100, 40, 105));
+            words.add(chunk("Page " + i, 40, 5, 60, 10));
+            List<TextChunk> characters = new ArrayList<>();
+            characters.add(chunk("B", 10, 100, 15, 105));
+            characters.add(chunk("P", 40, 5, 45, 10));
+            pages.add(new Page(0, 0, 100, 200, 0, characters, characters, words, new ArrayList<>(), new ArrayList<>()));
+        }
+
+        HeaderFooterRemover remover = new HeaderFooterRemover();
+        Iterator<Page> processed = remover.process(pages.iterator());
+
+        assertEquals(2, remover.getBands().size());
+        assertEquals("Annual report", remover.getBands().get(0).getText());
+        assertEquals(3, remover.getBands().get(0).getPageCount());
+        assertEquals(HeaderFooterRemover.Edge.BOTTOM, remover.getBands().get(1).getEdge());
+        assertEquals(5, remover.getBands().get(1).getDistance(), 0.0);
+
+        for (int i = 1; i <= 4; i++) {
+            Page page = processed.next();
+            assertEquals(1, page.getWordChunks().size());
+            assertEquals("Body " + i, page.getWordChunks().get(0).getText());
+            assertEquals(i == 3 ? 1 : 3, page.getRemovedChunks().size());
+            assertEquals(1, page.getCharacterChunks().size());
+            assertEquals("B", page.getCharacterChunks().get(0).getText());
+        }
+        assertFalse(processed.hasNext());
+    }
+
+    @Test
+    public void learnsOnlyLinesAtEdges() {
+        String[] chapters = {"Alpha", "Beta", "Gamma", "Delta"};
+        List<Page> pages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            List<TextChunk> words = new ArrayList<>(Arrays.asList(
+                chunk("Annual", 10, 190, 30, 195),
+                chunk("report", 32, 190, 50, 195),
+                // the recurring header of a table follows a line, which does not recur
+                chunk(chapters[i - 1], 10, 180, 40, 185),
+                chunk("Name", 10, 172, 30, 177),
+                chunk("Value", 40, 172, 60, 177),
+                // the recurring row of a ruled table and a caption of a figure
+                chunk("Total " + i, 10, 20, 60, 25),
+                chunk("Confidential", 10, 12, 60, 16),
+                chunk("Page " + i, 40, 5, 60, 10)
+            ));
+            pages.add(new Page(0, 0, 100, 200, 0, new ArrayList<>(), new ArrayList<>(), words,
+                Arrays.asList(new Ruling(0, 18, 100, 18), new Ruling(0, 27, 100, 27)),
+                Collections.singletonList(new Rectangle(0, 11, 100, 17))));
+        }
+
+        HeaderFooterRemover remover = new HeaderFooterRemover();
+        remover.learn(pages);
+
+        assertEquals(2, remover.getBands().size());
+        assertEquals("Annual report", remover.getBands().get(0).getText());
+        assertEquals("Page 1", remover.getBands().get(1).getText());
+        assertEquals(4, remover.getBands().get(1).getPageCount());
+        assertEquals(3, remover.remove(pages.get(1)).getRemovedChunks().size());
+    }
+
+    @Test
+    public void clustersLinesWithinTolerance() {
+        List<Page> pages = new ArrayList<>();
+        for (int i = 1; i <= 4; i++) {
+            double bottom = i % 2 == 0 ? 4.9 : 5.1;
+            pages.add(new Page(0, 0, 100, 200, 0, new ArrayList<>(), new ArrayList<>(),
+                Collections.singletonList(chunk("Page " + i, 40, bottom, 60, bottom + 5)), new ArrayList<>(),
+                new ArrayList<>()));
+        }
+
+        HeaderFooterRemover remover = new HeaderFooterRemover().setMinPageRatio(1);
+        remover.learn(pages);
+
+        assertEquals(1, remover.getBands().size());
+        assertEquals(4, remover.getBands().get(0).getPageCount());
+    }
+
+    private static TextChunk chunk(String text, double left, double bottom, double right, double top) {
+        return new TextChunk(text, left, bottom, right, top, FontCharacteristics.newBuilder().build());
+    }
+}
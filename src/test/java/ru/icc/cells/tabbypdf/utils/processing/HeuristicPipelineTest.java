@@ -0,0 +1,112 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+import ru.icc.cells.tabbypdf.entities.TextLine;
+import ru.icc.cells.tabbypdf.utils.processing.filter.Heuristic;
+import ru.icc.cells.tabbypdf.utils.processing.filter.bi.BiHeuristic;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class HeuristicPipelineTest {
+
+    @Test
+    public void ordersHeuristicsAdaptively() {
+        HeuristicPipeline pipeline = new TextChunkProcessorConfiguration()
+            .addFilter(new Passing())
+            .addFilter(new Rejecting())
+            .setAdaptiveHeuristicOrder(true)
+            .getHeuristicPipeline();
+        BlockFeatures first = features("a", 0, 10);
+        BlockFeatures second = features("b", 12, 20);
+
+        for (int i = 0; i < 2048; i++) {
+            assertFalse(pipeline.getHorizontal().test(null, first, second, null));
+        }
+
+        List<HeuristicStatistics> statistics = pipeline.getStatistics();
+        // the heuristic rejecting every pair is tested first, so the other one is not tested any more
+        assertEquals(Rejecting.class.getName(), statistics.get(0).getHeuristic());
+        assertEquals(1.0, statistics.get(0).getRejectionRate(), 0.0);
+        assertEquals(Passing.class.getName(), statistics.get(1).getHeuristic());
+        assertEquals(1024, statistics.get(1).getTests());
+        assertEquals(0, statistics.get(1).getRejections());
+    }
+
+    @Test
+    public void freezesExportedOrder() {
+        HeuristicPipeline adaptive = new TextChunkProcessorConfiguration()
+            .addFilter(new Passing())
+            .addFilter(new Rejecting())
+            .setAdaptiveHeuristicOrder(true)
+            .getHeuristicPipeline();
+        BlockFeatures first = features("a", 0, 10);
+        BlockFeatures second = features("b", 12, 20);
+        for (int i = 0; i < 1024; i++) {
+            adaptive.getHorizontal().test(null, first, second, null);
+        }
+
+        String exported = adaptive.exportStatistics();
+        HeuristicPipeline frozen = new TextChunkProcessorConfiguration()
+            .addFilter(new Passing())
+            .addFilter(new Rejecting())
+            .setHeuristicOrder(HeuristicStatistics.parse(exported))
+            .getHeuristicPipeline();
+
+        List<HeuristicStatistics> statistics = frozen.getStatistics();
+        assertEquals(2, statistics.size());
+        assertEquals(Rejecting.class.getName(), statistics.get(0).getHeuristic());
+        assertEquals(Passing.class.getName(), statistics.get(1).getHeuristic());
+        // statistics are not collected unless the pipeline is adaptive
+        assertFalse(frozen.getHorizontal().test(null, first, second, null));
+        assertEquals(0, frozen.getStatistics().get(0).getTests());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedHeuristics() {
+        new TextChunkProcessorConfiguration().addFilter(new LinesHeuristic()).getHeuristicPipeline();
+    }
+
+    private static BlockFeatures features(String text, double left, double right) {
+        TextBlock block = new TextBlock();
+        block.add(new TextChunk(text, left, 0, right, 10, FontCharacteristics.newBuilder().build()));
+        return new BlockFeatures(block);
+    }
+
+    private static class Passing extends BiHeuristic<TextBlock> {
+        private Passing() {
+            super(Heuristic.Orientation.HORIZONTAL);
+        }
+
+        @Override
+        public boolean test(TextBlock first, TextBlock second) {
+            return true;
+        }
+    }
+
+    private static class LinesHeuristic extends BiHeuristic<TextLine> {
+        private LinesHeuristic() {
+            super(Heuristic.Orientation.VERTICAL);
+        }
+
+        @Override
+        public boolean test(TextLine first, TextLine second) {
+            return true;
+        }
+    }
+
+    private static class Rejecting extends BiHeuristic<TextBlock> {
+        private Rejecting() {
+            super(Heuristic.Orientation.HORIZONTAL);
+        }
+
+        @Override
+        public boolean test(TextBlock first, TextBlock second) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import org.junit.Test;
+import ru.icc.cells.tabbypdf.entities.FontCharacteristics;
+import ru.icc.cells.tabbypdf.entities.TextBlock;
+import ru.icc.cells.tabbypdf.entities.TextChunk;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class OverlapMergerTest {
+
+    @Test
+    public void mergesBlocksWithSameBounds() {
+        List<TextBlock> blocks = new ArrayList<>();
+        blocks.add(block("a", 0, 0, 10, 10));
+        blocks.add(block("b", 0, 0, 10, 10));
+        blocks.add(block("c", 50, 0, 60, 10));
+        blocks.add(block("d", 0, 0, 10, 10));
+
+        List<TextBlock> merged = new OverlapMerger(blocks).merge();
+
+        assertEquals(2, merged.size());
+        assertSame(blocks.get(0), merged.get(0));
+        assertEquals("abd", merged.get(0).getText());
+        assertEquals("c", merged.get(1).getText());
+    }
+
+    @Test
+    public void mergesBlocksIntersectingGrownBlock() {
+        List<TextBlock> blocks = new ArrayList<>();
+        blocks.add(block("a", 0, 20, 5, 30));
+        blocks.add(block("b", 3, 0, 8, 10));
+        blocks.add(block("c", 7, 5, 25, 25));
+        blocks.add(block("d", 100, 100, 110, 110));
+
+        List<TextBlock> merged = new OverlapMerger(blocks).merge();
+
+        // b grown by c intersects a, which comes first
+        assertEquals(2, merged.size());
+        assertEquals("abc", merged.get(0).getText());
+        assertEquals(0, merged.get(0).getLeft(), 0.0);
+        assertEquals(30, merged.get(0).getTop(), 0.0);
+        assertEquals("d", merged.get(1).getText());
+    }
+
+    private static TextBlock block(String text, double left, double bottom, double right, double top) {
+        TextBlock block = new TextBlock();
+        block.add(new TextChunk(text, left, bottom, right, top, FontCharacteristics.newBuilder().build()));
+        return block;
+    }
+}
@@ -0,0 +1,51 @@
+package ru.icc.cells.tabbypdf.utils.processing;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class StringRemoverTest {
+
+    @Test
+    public void remove() {
+        StringRemover remover = StringRemover.of(Arrays.asList("•", "_", "ab", "b", "abc", "😀", ""));
+
+        String text = "plain text";
+        assertSame(text, remover.remove(text));
+        assertEquals("1.x", remover.remove("•_1.x_"));
+        // the string ending first is removed, the longest one of those ending at the same position
+        assertEquals("c", remover.remove("abc"));
+        assertEquals("xc", remover.remove("xbc"));
+        assertEquals("aa", remover.remove("aab😀a"));
+        assertEquals(".", remover.remove("."));
+        assertEquals("\uD83D", remover.remove("\uD83D"));
+    }
+
+    @Test
+    public void removesAll() {
+        StringRemover remover = StringRemover.of(Arrays.asList("•", "_", "ab"));
+
+        assertTrue(remover.removesAll(""));
+        assertTrue(remover.removesAll("•_ab•"));
+        assertFalse(remover.removesAll("•a"));
+        assertFalse(remover.removesAll("a•"));
+        assertFalse(StringRemover.of(Arrays.asList()).removesAll(" "));
+    }
+
+    @Test
+    public void filter() {
+        StringRemover remover = StringRemover.of(Arrays.asList("•", "abc"));
+        StringRemover.Filter filter = remover.newFilter();
+
+        for (String piece : new String[] {"•", "x", "a", "b", "c", "ab", "y"}) {
+            filter.append(piece);
+        }
+        assertEquals("xaby", filter.toString());
+
+        filter.clear();
+        filter.append("•");
+        assertTrue(filter.isEmpty());
+    }
+}